@@ -3,6 +3,10 @@ package adapter.linlang.bukkit.file.common.file;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
 /*
  * 封装主线程与异步调度
  */
@@ -21,6 +25,19 @@ public final class BukkitMainThread {
         Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
     }
 
+    /* 主线程执行器，可用于 thenAcceptAsync(..., executor()) */
+    public Executor executor(){ return this::runSync; }
+
+    /* 异步结果完成后切回主线程继续 */
+    public <T> CompletableFuture<T> onMain(CompletionStage<T> stage){
+        CompletableFuture<T> out = new CompletableFuture<>();
+        stage.whenComplete((v, ex) -> runSync(() -> {
+            if (ex != null) out.completeExceptionally(ex);
+            else out.complete(v);
+        }));
+        return out;
+    }
+
     /* 主线程延时执行（tick）*/
     public void runLater(int delayTicks, Runnable task){
         Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
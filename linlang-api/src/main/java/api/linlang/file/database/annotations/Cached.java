@@ -0,0 +1,34 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 为实体启用按 ID 的读穿缓存（二级缓存）。
+ * <p>
+ * findById/existsById 先查缓存；经仓库的 save/deleteById/deleteAll 会同步更新或失效缓存。
+ * 缓存中的实体实例在调用方之间共享，修改后请及时 save。
+ */
+@Retention(RUNTIME) @Target(TYPE)
+public @interface Cached {
+    /** 最大条目数。 */
+    int maxSize() default 1024;
+    /** 写入后存活秒数，0 为不过期。 */
+    long ttlSeconds() default 0;
+    /** 空闲（未被访问）秒数，超过即过期，0 为不过期。 */
+    long idleSeconds() default 0;
+    /** 淘汰策略。 */
+    Eviction eviction() default Eviction.LRU;
+    /** 是否缓存“不存在”的结果。 */
+    boolean cacheMisses() default false;
+
+    enum Eviction {
+        /** 近似 LRU（CLOCK）。 */
+        LRU,
+        /** 近似 LRU 选出淘汰者，再按访问频率（TinyLFU）决定是否接纳新条目。 */
+        TINY_LFU
+    }
+}
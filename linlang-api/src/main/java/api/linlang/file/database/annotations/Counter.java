@@ -0,0 +1,16 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 计数列（int/long），只经 {@link api.linlang.file.database.repo.Repository#increment} 累加。
+ * <p>
+ * 插入时写入实体上的初值；此后 save、upsert 与延迟写都不再写该列，避免整行保存覆盖已累加的增量。
+ * 实体上的字段值是读出时的快照，最新值用 {@link api.linlang.file.database.repo.Repository#readCounter} 读取。
+ */
+@Retention(RUNTIME) @Target(FIELD)
+public @interface Counter {}
@@ -0,0 +1,19 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 为实体启用脏检查。
+ * <p>
+ * 经仓库读出或写入的实体按 ID 保留一份列值快照；save 时只 UPDATE 有变化的列，
+ * 无变化则不访问数据库。没有快照的实体（未经仓库读取，或超过 maxSnapshots）仍整行更新。
+ */
+@Retention(RUNTIME) @Target(TYPE)
+public @interface DirtyTracking {
+    /** 最多保留的快照数，超出后新读出的实体不再跟踪。 */
+    int maxSnapshots() default 10000;
+}
@@ -0,0 +1,24 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 实体数据的版本号。
+ * <p>
+ * 库中记录的版本低于该值时，按序执行经 {@code DataService.registerMigration} 注册的
+ * {@link api.linlang.file.database.migration.EntityMigration}，在后台按主键分块改写已有行。
+ * 需要 {@link Id}。
+ * <p>
+ * 每块提交后仓库作废这些行的缓存与常驻行。迁移开始前已读出、在迁移后才保存的实体仍可能写回旧值：
+ * 带 {@link Version} 时这类保存以版本冲突失败；不带时启用 {@link DirtyTracking} 可只写调用方改过的列，
+ * 否则整行覆盖迁移结果。
+ */
+@Retention(RUNTIME) @Target(TYPE)
+public @interface EntityVersion {
+    /** 当前实体数据版本号。 */
+    int value();
+}
@@ -7,4 +7,12 @@ import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 @Retention(RUNTIME) @Target(FIELD)
-public @interface Id { boolean auto() default true; }
+public @interface Id {
+    boolean auto() default true;
+
+    /**
+     * 客户端 ID 生成器名称，如 {@code uuid7}（UUID 或 String 字段）、{@code snowflake}（long 或 String 字段）。
+     * 非空时忽略 auto：新实体在插入前分配 ID。
+     */
+    String generator() default "";
+}
@@ -6,4 +6,5 @@ import java.lang.annotation.Target;
 import static java.lang.annotation.ElementType.FIELD;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
-@Retention(RUNTIME) @Target(FIELD) public @interface Index { String name() default ""; String[] columns() default {}; }
+/** 建表与迁移时为该字段创建索引；columns 非空时为复合索引（按列名或字段名），unique 为唯一索引。 */
+@Retention(RUNTIME) @Target(FIELD) public @interface Index { String name() default ""; String[] columns() default {}; boolean unique() default false; }
@@ -0,0 +1,17 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 把实体放到 {@code DbConfig.datasource(name, ...)} 声明的命名数据源：建表、迁移与读写都在那里进行。
+ * 未标注的实体使用默认数据源。
+ */
+@Retention(RUNTIME) @Target(TYPE)
+public @interface OnDataSource {
+    /** 数据源名称。 */
+    String value();
+}
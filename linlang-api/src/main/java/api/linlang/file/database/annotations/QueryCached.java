@@ -0,0 +1,23 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 为实体启用查询结果缓存：{@code query(QuerySpec)}、{@code query(Criteria)} 与 {@code find(Criteria)}
+ * 按 SQL 与参数缓存结果。
+ * <p>
+ * 经本仓库的任何写入都会使该表的全部结果失效；其他进程或库外的写入只能等 TTL 过期。
+ * 同一查询同时未命中时只有一个调用方查库，其余等待它的结果。
+ * 结果列表不可修改，其中的实体实例在调用方之间共享。事务单元内的查询不经缓存。
+ */
+@Retention(RUNTIME) @Target(TYPE)
+public @interface QueryCached {
+    /** 最多缓存的不同查询数。 */
+    int maxSize() default 256;
+    /** 结果存活毫秒数。 */
+    long ttlMillis() default 1000;
+}
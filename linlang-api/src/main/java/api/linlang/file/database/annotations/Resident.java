@@ -0,0 +1,18 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 整表常驻内存，适用于商店、礼包、传送点等小型参考表。
+ * <p>
+ * 打开仓库时载入全表，并为 {@link Index} 声明的列建立内存哈希/有序索引；按 ID、按列与 Criteria 的读取全部在内存完成。
+ * 写入默认同步写库（write-through），同时标注 {@link WriteBehind} 时改为延迟写。
+ * 原样 SQL 条件（{@code findAllWhere}、{@code query(QuerySpec)}）仍直接查询数据库。实体必须有 {@link Id}。
+ */
+@Retention(RUNTIME) @Target(TYPE)
+public @interface Resident {
+}
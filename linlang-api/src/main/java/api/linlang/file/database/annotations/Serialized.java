@@ -0,0 +1,27 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 指定复杂字段（List、Map、POJO 等）的存储格式。
+ * <p>
+ * 未标注时，集合、Map、数组与非 JDK 类型默认以 JSON 文本存储；枚举按名称、UUID 按字符串存储。
+ */
+@Retention(RUNTIME) @Target(FIELD)
+public @interface Serialized {
+    /** 存储格式。 */
+    Format value() default Format.JSON;
+    /** BINARY 格式下编码超过该字节数时以 Deflate 压缩；0 为不压缩。 */
+    int compressAbove() default 1024;
+
+    enum Format {
+        /** JSON 文本（MEDIUMTEXT 列），可直接在库中查看 */
+        JSON,
+        /** JSON 的 UTF-8 字节（MEDIUMBLOB 列），大值按阈值压缩，适合背包等大字段 */
+        BINARY
+    }
+}
@@ -0,0 +1,18 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 乐观锁版本列（int/long）。
+ * <p>
+ * 插入时为 1；每次更新以 {@code WHERE id=? AND version=?} 条件写入并加一，行已被他处修改时抛出
+ * {@link api.linlang.file.database.repo.OptimisticLockException}。版本为 0 的实体视为新行；
+ * 补上本列之前已有的行（版本为 NULL/0）在结构同步时补为 1，保存时遇到这样的行也按已存在处理。
+ * 不可与 {@link WriteBehind} 同用：延迟写无法把冲突交还给调用方。
+ */
+@Retention(RUNTIME) @Target(FIELD)
+public @interface Version {}
@@ -0,0 +1,21 @@
+package api.linlang.file.database.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 为实体启用延迟写（write-behind）。
+ * <p>
+ * save/delete 只写入内存待写集（同一 ID 仅保留最新状态），由后台线程按数量或时间批量落盘；
+ * {@code Repository.flush()} 与 {@code close()} 会同步清空待写集。
+ */
+@Retention(RUNTIME) @Target(TYPE)
+public @interface WriteBehind {
+    /** 待写条目达到该数量时立即触发后台落盘；积压到 4 倍时 save/delete 先同步落盘再返回。 */
+    int maxPending() default 512;
+    /** 后台定时落盘间隔（毫秒）。 */
+    long flushMillis() default 5000;
+}
@@ -0,0 +1,18 @@
+package api.linlang.file.database.codec;
+
+/**
+ * 某一字段类型的存储编解码器，经 {@code DataService.registerCodec} 按类型注册，优先于内置编解码。
+ * <p>
+ * 构建实体计划时按字段解析一次。实现必须线程安全；null 不会传入。
+ * @param <T> 字段类型
+ */
+public interface FieldCodec<T> {
+    /** 建表时的列类型，如 {@code VARCHAR(64)}、{@code MEDIUMTEXT}、{@code MEDIUMBLOB}。 */
+    default String sqlType() { return "MEDIUMTEXT"; }
+
+    /** 字段值 → JDBC 绑定值（String、byte[]、数字等） */
+    Object encode(T value);
+
+    /** 驱动返回值 → 字段值；大对象列可能是 {@link java.sql.Clob}/{@link java.sql.Blob} */
+    T decode(Object stored);
+}
@@ -2,12 +2,39 @@ package api.linlang.file.database.config;
 
 // linlang-called/src/main/java/io/linlang/file/DbConfig.java
 
+import api.linlang.file.database.types.ReplicaSelection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /** 数据源配置。用在 DataService.init(...)。 */
 public class DbConfig {
     private final String url;
     private final String user;
     private final String pass;
     private final int poolSize;
+    private int batchSize = 500;
+    private int asyncThreads = 0;
+    private int asyncQueueDepth = 1024;
+    private long counterFlushMillis = 1000;
+    private int nodeId = 0;
+    private long connectionTimeoutMillis = 30000;
+    private boolean degradedMode = false;
+    private long slowCallMillis = 2000;
+    private long breakerOpenMillis = 5000;
+    private int h2CacheSizeKb = 0;
+    private long backupMillis = 0;
+    private int backupKeep = 3;
+    private boolean compactOnClose = true;
+    private boolean schemaCache = true;
+    private int backfillChunk = 500;
+    private long backfillPauseMillis = 50;
+    private final List<Replica> replicas = new ArrayList<>();
+    private ReplicaSelection replicaSelection = ReplicaSelection.ROUND_ROBIN;
+    private final Map<String, DbConfig> datasources = new LinkedHashMap<>();
 
     public DbConfig(String url, String user, String pass, int poolSize){
         this.url = url; this.user = user; this.pass = pass; this.poolSize = poolSize;
@@ -17,6 +44,104 @@ public class DbConfig {
     public String user(){ return user; }
     public String pass(){ return pass; }
     public int poolSize(){ return poolSize; }
+    public int batchSize(){ return batchSize; }
+
+    public int asyncThreads(){ return asyncThreads > 0 ? asyncThreads : Math.max(2, poolSize); }
+    public int asyncQueueDepth(){ return asyncQueueDepth; }
+    public long counterFlushMillis(){ return counterFlushMillis; }
+    public int nodeId(){ return nodeId; }
+    public long connectionTimeoutMillis(){ return connectionTimeoutMillis; }
+    public boolean degradedMode(){ return degradedMode; }
+    public long slowCallMillis(){ return slowCallMillis; }
+    public long breakerOpenMillis(){ return breakerOpenMillis; }
+    public int h2CacheSizeKb(){ return h2CacheSizeKb; }
+    public long backupMillis(){ return backupMillis; }
+    public int backupKeep(){ return backupKeep; }
+    public boolean compactOnClose(){ return compactOnClose; }
+    public boolean schemaCache(){ return schemaCache; }
+    public int backfillChunk(){ return backfillChunk; }
+    public long backfillPauseMillis(){ return backfillPauseMillis; }
+    public List<Replica> replicas(){ return Collections.unmodifiableList(replicas); }
+    public ReplicaSelection replicaSelection(){ return replicaSelection; }
+    public Map<String, DbConfig> datasources(){ return Collections.unmodifiableMap(datasources); }
+
+    /** 批量写入（saveAll）每批的行数，每批一次往返。 */
+    public DbConfig batchSize(int batchSize){ this.batchSize = Math.max(1, batchSize); return this; }
+    /** 异步仓库的执行线程数；默认与连接池大小一致。支持虚拟线程时不限制线程数。 */
+    public DbConfig asyncThreads(int threads){ this.asyncThreads = threads; return this; }
+    /** 异步仓库最多排队（含执行中）的任务数，超出即拒绝。 */
+    public DbConfig asyncQueueDepth(int depth){ this.asyncQueueDepth = Math.max(1, depth); return this; }
+    /** 计数列（Repository.increment）增量的定时落盘间隔（毫秒）。 */
+    public DbConfig counterFlushMillis(long millis){ this.counterFlushMillis = Math.max(50L, millis); return this; }
+    /** snowflake ID 生成器的节点号（0–1023）；共用同一库的多个服务器须各不相同。 */
+    public DbConfig nodeId(int nodeId){
+        if (nodeId < 0 || nodeId > 1023) throw new IllegalArgumentException("nodeId must be 0..1023: " + nodeId);
+        this.nodeId = nodeId; return this;
+    }
+
+    /** 从连接池借连接的最长等待（毫秒），超时即视为数据库不可达。 */
+    public DbConfig connectionTimeoutMillis(long millis){ this.connectionTimeoutMillis = Math.max(250L, millis); return this; }
+    /**
+     * 降级模式：连续失败或变慢时熔断，熔断期间写入记入 dataDocRoot/journal 下的本地日志，
+     * 读取只由缓存/常驻表提供，数据库恢复后按序分批回放日志。
+     */
+    public DbConfig degradedMode(boolean enabled){ this.degradedMode = enabled; return this; }
+    /** 降级模式下，借连接等待超过该耗时（毫秒）按失败计入熔断；语句执行耗时不计。 */
+    public DbConfig slowCallMillis(long millis){ this.slowCallMillis = Math.max(1L, millis); return this; }
+    /** 熔断打开后等待多久（毫秒）再放行一次探测。 */
+    public DbConfig breakerOpenMillis(long millis){ this.breakerOpenMillis = Math.max(100L, millis); return this; }
+
+    /** H2 的 MVStore 缓存大小（KB）；0 为 H2 默认。写入 URL 的 CACHE_SIZE，URL 已指定时不覆盖。 */
+    public DbConfig h2CacheSizeKb(int kb){ this.h2CacheSizeKb = Math.max(0, kb); return this; }
+    /** 本地 H2 库的在线备份间隔（毫秒），备份到 dataDocRoot/backup；0 为不备份。 */
+    public DbConfig backupMillis(long millis){ this.backupMillis = Math.max(0L, millis); return this; }
+    /** 保留的备份个数，更早的自动删除。 */
+    public DbConfig backupKeep(int keep){ this.backupKeep = Math.max(1, keep); return this; }
+    /** 关闭时对本地 H2 库执行 SHUTDOWN COMPACT，回收空间。 */
+    public DbConfig compactOnClose(boolean compact){ this.compactOnClose = compact; return this; }
+
+    /**
+     * 只读副本（账号同主库）。仓库的查询分到副本，写入仍走主库；事务单元内的查询也走主库，
+     * 能读到本单元刚写入的数据。副本有复制延迟，单元外写后立即读可能读到旧值。
+     */
+    public DbConfig replica(String url){ return replica(url, user, pass); }
+    /** 只读副本，单独指定账号。 */
+    public DbConfig replica(String url, String user, String pass){
+        if (url == null || url.isEmpty()) throw new IllegalArgumentException("replica url");
+        replicas.add(new Replica(url, user, pass)); return this;
+    }
+    /** 多个副本时的选择策略：轮询，或按近期平均延迟选最快的。 */
+    public DbConfig replicaSelection(ReplicaSelection selection){
+        this.replicaSelection = selection == null ? ReplicaSelection.ROUND_ROBIN : selection; return this;
+    }
+    /**
+     * 命名数据源，供 {@code @OnDataSource(name)} 的实体使用。取 cfg 的 URL、账号、连接池大小、副本与副本策略，
+     * 其余选项沿用本配置；类型按 URL 判断（jdbc:h2: / jdbc:mysql:）。
+     */
+    public DbConfig datasource(String name, DbConfig cfg){
+        if (name == null || name.isEmpty() || cfg == null || cfg.url() == null) {
+            throw new IllegalArgumentException("datasource needs a name and a url");
+        }
+        datasources.put(name, cfg); return this;
+    }
+
+    /** 一个只读副本的连接信息。 */
+    public record Replica(String url, String user, String pass) {}
+
+    /**
+     * 结构指纹：各实体的列与索引摘要记在 linlang_schema 表，启动时指纹未变的实体跳过建表与元数据查询，
+     * 变了的才比对并补列、补索引。库外删改表后删除对应行即可重新同步。
+     */
+    public DbConfig schemaCache(boolean enabled){ this.schemaCache = enabled; return this; }
+    /** @EntityVersion 数据迁移每块改写的行数，每块一个短事务，只锁住本块的行。 */
+    public DbConfig backfillChunk(int rows){ this.backfillChunk = Math.max(1, rows); return this; }
+    /** 数据迁移两块之间的暂停（毫秒），限制回填对线上负载的影响。 */
+    public DbConfig backfillPauseMillis(long millis){ this.backfillPauseMillis = Math.max(0L, millis); return this; }
+
+    /** 内嵌 H2：库文件位于 dataDocRoot/linlang.mv.db，无需填写 URL。配合 DbType.H2 使用。 */
+    public static DbConfig embedded(){
+        return new DbConfig(null, "sa", "", 4);
+    }
 
     /** 便捷构造。 */
     public static DbConfig of(String url, String user, String pass, int poolSize){
@@ -0,0 +1,62 @@
+package api.linlang.file.database.dto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 类型化查询条件：各条件以 AND 连接，列名按实体计划校验（列名或字段名均可）。
+ * 相同结构的查询编译为同一条预编译 SQL，仅参数不同。
+ */
+public final class Criteria {
+
+    public enum Op { EQ, NE, LT, LE, GT, GE, IN, LIKE, IS_NULL, NOT_NULL }
+
+    /** 单个条件；IN 的 values 为全部候选值，其余为 0 或 1 个值 */
+    public record Condition(String column, Op op, List<Object> values) {}
+
+    public record Order(String column, boolean ascending) {}
+
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<Order> orders = new ArrayList<>();
+    private int limit;
+    private int offset;
+    private boolean total;
+
+    public static Criteria of(){ return new Criteria(); }
+
+    public Criteria eq(String column, Object value){ return add(column, Op.EQ, value); }
+    public Criteria ne(String column, Object value){ return add(column, Op.NE, value); }
+    public Criteria lt(String column, Object value){ return add(column, Op.LT, value); }
+    public Criteria le(String column, Object value){ return add(column, Op.LE, value); }
+    public Criteria gt(String column, Object value){ return add(column, Op.GT, value); }
+    public Criteria ge(String column, Object value){ return add(column, Op.GE, value); }
+    /** 闭区间 [from, to] */
+    public Criteria between(String column, Object from, Object to){ return ge(column, from).le(column, to); }
+    public Criteria like(String column, String pattern){ return add(column, Op.LIKE, pattern); }
+    public Criteria isNull(String column){ conditions.add(new Condition(column, Op.IS_NULL, List.of())); return this; }
+    public Criteria notNull(String column){ conditions.add(new Condition(column, Op.NOT_NULL, List.of())); return this; }
+    public Criteria in(String column, Collection<?> values){
+        conditions.add(new Condition(column, Op.IN, Collections.unmodifiableList(new ArrayList<>(values))));
+        return this;
+    }
+
+    public Criteria orderBy(String column){ orders.add(new Order(column, true)); return this; }
+    public Criteria orderByDesc(String column){ orders.add(new Order(column, false)); return this; }
+    public Criteria limit(int limit){ this.limit = limit; return this; }
+    public Criteria offset(int offset){ this.offset = offset; return this; }
+    /** 为 true 时 {@link Page#total()} 返回满足条件的总记录数 */
+    public Criteria total(boolean total){ this.total = total; return this; }
+
+    public List<Condition> conditions(){ return Collections.unmodifiableList(conditions); }
+    public List<Order> orders(){ return Collections.unmodifiableList(orders); }
+    public int limit(){ return limit; }
+    public int offset(){ return offset; }
+    public boolean total(){ return total; }
+
+    private Criteria add(String column, Op op, Object value){
+        conditions.add(new Condition(column, op, Collections.singletonList(value)));
+        return this;
+    }
+}
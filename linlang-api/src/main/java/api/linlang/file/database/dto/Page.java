@@ -4,7 +4,7 @@ package api.linlang.file.database.dto;
 
 import java.util.List;
 
-/** 分页结果。total 为当前页条数的简化实现；如需总数请扩展。 */
+/** 分页结果。查询时设置 {@link QuerySpec#total(boolean)} 则 total 为满足条件的总记录数，否则为当前页条数。 */
 public final class Page<T> {
     private final List<T> items;
     private final int total;
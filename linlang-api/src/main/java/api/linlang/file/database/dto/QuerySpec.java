@@ -13,6 +13,7 @@ public final class QuerySpec {
     private String orderBy;
     private int limit;
     private int offset;
+    private boolean total;
 
     public static QuerySpec of(){ return new QuerySpec(); }
 
@@ -22,10 +23,13 @@ public final class QuerySpec {
     public QuerySpec orderBy(String orderBy){ this.orderBy = orderBy; return this; }
     public QuerySpec limit(int limit){ this.limit = limit; return this; }
     public QuerySpec offset(int offset){ this.offset = offset; return this; }
+    /** 为 true 时 {@link Page#total()} 返回满足 where 的总记录数，而非当前页条数 */
+    public QuerySpec total(boolean total){ this.total = total; return this; }
 
     public String where(){ return where; }
     public List<Object> params(){ return Collections.unmodifiableList(params); }
     public String orderBy(){ return orderBy; }
     public int limit(){ return limit; }
     public int offset(){ return offset; }
+    public boolean total(){ return total; }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package api.linlang.file.database.id;
+
+/**
+ * 客户端主键生成器，由 {@code @Id(generator = "...")} 按名称引用。
+ * <p>
+ * 实体在插入前即获得 ID，批量插入不再依赖自增键回传。实现必须线程安全。
+ * 内置 {@code uuid7}（时间有序 UUID）与 {@code snowflake}（64 位时间有序长整型），
+ * 其他实现经 {@code DataService.registerIdGenerator} 注册。
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    /** 生成下一个 ID；返回值按字段类型转换（String 字段取 toString，整数字段取数值） */
+    Object next();
+}
@@ -0,0 +1,19 @@
+package api.linlang.file.database.migration;
+
+import java.util.Map;
+
+/**
+ * 实体数据的一步迁移：把 {@link #from()} 版本的行改写为 {@link #to()} 版本。
+ * <p>
+ * 在后台按主键分块执行，每块一个短事务，进度记入 {@code linlang_migration}，重启后从断点继续。
+ * 同一行可能因中断而被再次改写，实现应当幂等。
+ */
+public interface EntityMigration {
+    int from(); int to();
+
+    /**
+     * 改写一行。row 含表中全部列（忽略大小写）：实体中存在的列为字段值，其余列（如已移除字段的旧列）为数据库原值。
+     * 只有实体中存在的非 ID 列会被写回；未做修改的行不写。
+     */
+    void migrate(Map<String, Object> row);
+}
@@ -0,0 +1,57 @@
+package api.linlang.file.database.repo;
+
+import api.linlang.file.database.dto.Criteria;
+import api.linlang.file.database.dto.Page;
+import api.linlang.file.database.dto.QuerySpec;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link Repository} 的异步视图，由 {@code DataService.async(Class)} 获取。
+ * <p>
+ * 所有方法都在有界的数据库执行器上运行并立即返回；执行器排队已满时，返回的 future
+ * 以 {@link java.util.concurrent.RejectedExecutionException} 异常完成（背压）。
+ * 回到主线程继续处理请使用平台适配层提供的执行器，例如 Bukkit 的 {@code BukkitMainThread.onMain(...)}。
+ */
+public interface AsyncRepository<T, ID> {
+
+    CompletableFuture<T> save(T e);
+
+    CompletableFuture<Void> deleteById(ID id);
+
+    CompletableFuture<Optional<T>> findById(ID id);
+
+    CompletableFuture<List<T>> findAll();
+
+    CompletableFuture<Page<T>> query(QuerySpec spec);
+
+    CompletableFuture<Page<T>> query(Criteria criteria);
+
+    CompletableFuture<List<T>> find(Criteria criteria);
+
+    CompletableFuture<Long> count();
+
+    CompletableFuture<Boolean> existsById(ID id);
+
+    CompletableFuture<Void> deleteAll();
+
+    CompletableFuture<Void> saveAll(Collection<T> entities);
+
+    CompletableFuture<Optional<T>> findOneWhere(String column, Object value);
+
+    CompletableFuture<List<T>> findAllWhere(String where, Object... params);
+
+    CompletableFuture<Void> flush();
+
+    CompletableFuture<Long> readCounter(ID id, String column);
+
+    /** 见 {@link Repository#retryOnConflict}；重试在执行器线程上进行。 */
+    CompletableFuture<Optional<T>> retryOnConflict(ID id, int maxAttempts, UnaryOperator<T> change);
+
+    /** 对应的同步仓库。 */
+    Repository<T, ID> blocking();
+}
@@ -0,0 +1,15 @@
+package api.linlang.file.database.repo;
+
+/**
+ * 数据库暂不可达：连接失败、超时，或熔断器处于打开状态而快速失败。
+ * 启用降级模式时写入不会抛出此异常，而是记入本地日志，待恢复后回放；读取未命中缓存时抛出。
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+
+    public DatabaseUnavailableException(Throwable cause) {
+        super(cause);
+    }
+}
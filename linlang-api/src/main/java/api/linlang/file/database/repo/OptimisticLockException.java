@@ -0,0 +1,25 @@
+package api.linlang.file.database.repo;
+
+/**
+ * 乐观锁冲突：按 {@code @Version} 条件写入时，行已被并发修改、删除或插入。
+ * 仓库已丢弃该 ID 的缓存状态，重新读取即可拿到最新版本；见 {@link Repository#retryOnConflict}。
+ */
+public class OptimisticLockException extends RuntimeException {
+    private final Class<?> entityType;
+    private final Object id;
+    private final long expectedVersion;
+
+    public OptimisticLockException(Class<?> entityType, Object id, long expectedVersion) {
+        super("Optimistic lock conflict on " + entityType.getSimpleName()
+                + (id == null ? "" : " id=" + id) + " (expected version " + expectedVersion + ")");
+        this.entityType = entityType;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public Class<?> entityType(){ return entityType; }
+    /** 冲突行的 ID；批量插入无法定位到行时为 null */
+    public Object id(){ return id; }
+    /** 写入时期望的版本；插入冲突为 0 */
+    public long expectedVersion(){ return expectedVersion; }
+}
@@ -1,14 +1,16 @@
 package api.linlang.file.database.repo;
 
+import api.linlang.file.database.dto.Criteria;
 import api.linlang.file.database.dto.Page;
 import api.linlang.file.database.dto.QuerySpec;
 import api.linlang.file.database.services.DataService;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 public interface Repository<T, ID> extends AutoCloseable {
 
@@ -22,6 +24,12 @@ public interface Repository<T, ID> extends AutoCloseable {
 
     Page<T> query(QuerySpec spec);
 
+    /** 按类型化条件分页查询；列名不存在时抛出 IllegalArgumentException。 */
+    Page<T> query(Criteria criteria);
+
+    /** 按类型化条件查询全部匹配记录。 */
+    List<T> find(Criteria criteria);
+
     long count();
 
     boolean existsById(ID id);
@@ -32,8 +40,60 @@ public interface Repository<T, ID> extends AutoCloseable {
 
     java.util.stream.Stream<T> streamAll();
 
+    /** 以指定抓取大小流式读取全表；需在 try-with-resources 中消费并关闭。事务内不可用，请改用 {@link #forEachBatch}。 */
+    default Stream<T> streamAll(int fetchSize) {
+        return streamAll();
+    }
+
+    /** 键集游标：返回主键大于 afterId 的至多 limit 条记录，按主键升序；afterId 为 null 时从头开始。 */
+    List<T> findAfter(ID afterId, int limit);
+
+    /**
+     * 分批遍历全表，每批至多 batchSize 条，内存占用与表大小无关。
+     * 默认实现基于 {@link #streamAll(int)}，事务内不可用；实现可改用 {@link #findAfter} 键集分页。
+     */
+    default void forEachBatch(int batchSize, Consumer<List<T>> consumer) {
+        int size = Math.max(1, batchSize);
+        try (Stream<T> s = streamAll(size)) {
+            List<T> buf = new ArrayList<>(size);
+            s.forEach(e -> {
+                buf.add(e);
+                if (buf.size() == size) {
+                    consumer.accept(List.copyOf(buf));
+                    buf.clear();
+                }
+            });
+            if (!buf.isEmpty()) consumer.accept(List.copyOf(buf));
+        }
+    }
+
+    /**
+     * 计数列原子累加（{@code c = c + delta}），列须标注 {@link api.linlang.file.database.annotations.Counter}。
+     * 增量先在内存按 (ID, 列) 合并，定时或 flush 时批量写入；对应行不存在时增量不生效。
+     */
+    void increment(ID id, String column, long delta);
+
+    /** 读取计数列，包含尚未落盘的增量。 */
+    long readCounter(ID id, String column);
+
+    /**
+     * 读取、修改、保存；遇到 {@link OptimisticLockException} 时重新读取最新版本再试，至多 maxAttempts 次。
+     * change 可能执行多次，应只依据传入的实体计算。实体不存在时返回空。
+     */
+    default Optional<T> retryOnConflict(ID id, int maxAttempts, UnaryOperator<T> change) {
+        for (int attempt = 1; ; attempt++) {
+            Optional<T> current = findById(id);
+            if (current.isEmpty()) return current;
+            try {
+                return Optional.of(save(change.apply(current.get())));
+            } catch (OptimisticLockException ex) {
+                if (attempt >= maxAttempts) throw ex;
+            }
+        }
+    }
+
     default Optional<T> findOneWhere(String column, Object value) {
-        return findAllWhere(column, value).stream().findFirst();
+        return find(Criteria.of().eq(column, value).limit(1)).stream().findFirst();
     }
 
     default void flush() { }
@@ -41,22 +101,5 @@ public interface Repository<T, ID> extends AutoCloseable {
     @Override
     default void close() {  }
 
-    default List<T> findAllWhere(String where, Object... params) {
-        if (where != null && where.contains("=") && params.length == 1) {
-            String field = where.split("=")[0].trim();
-            Object expected = params[0];
-            List<T> all = findAll();
-            List<T> out = new ArrayList<>();
-            for (T e : all) {
-                try {
-                    Field f = e.getClass().getDeclaredField(field);
-                    f.setAccessible(true);
-                    Object val = f.get(e);
-                    if (Objects.equals(val, expected)) out.add(e);
-                } catch (Exception ignore) {}
-            }
-            return out;
-        }
-        return findAll();
-    }
+    List<T> findAllWhere(String where, Object... params);
 }
\ No newline at end of file
@@ -1,9 +1,16 @@
 package api.linlang.file.database.services;
 
+import api.linlang.file.database.codec.FieldCodec;
 import api.linlang.file.database.config.DbConfig;
+import api.linlang.file.database.id.IdGenerator;
+import api.linlang.file.database.migration.EntityMigration;
+import api.linlang.file.database.repo.AsyncRepository;
 import api.linlang.file.database.repo.Repository;
 import api.linlang.file.database.types.DbType;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 /**
  * Database service facade used by plugins and higher-level modules.
  * <p>
@@ -29,11 +36,85 @@ public interface DataService extends AutoCloseable {
 
     /**
      * Obtain a repository for the annotated entity type.
+     * <p>
+     * The repository lives on the datasource named by {@code @OnDataSource}, or the default one.
+     * Writes go to that datasource's primary; queries outside a unit of work may be served by
+     * its read replicas.
      * @param entityType entity class
      * @return repository bound to that entity
      */
     <T, ID> Repository<T, ID> repo(Class<T> entityType);
 
+    /**
+     * Obtain a non-blocking view of the repository for the entity type.
+     * Calls run on a bounded database executor and complete a future.
+     * @param entityType entity class
+     * @return asynchronous repository bound to that entity
+     */
+    <T, ID> AsyncRepository<T, ID> async(Class<T> entityType);
+
+    /**
+     * Register a client-side ID generator referenced by {@code @Id(generator = name)}.
+     * The built-in {@code uuid7} and {@code snowflake} generators are always present;
+     * registering under an existing name replaces it. Register before the first
+     * {@link #repo(Class)} call for an entity that uses it.
+     * @param name generator name
+     * @param generator thread-safe generator
+     */
+    void registerIdGenerator(String name, IdGenerator generator);
+
+    /**
+     * Register how fields of a type are stored, taking precedence over the built-in
+     * handling (JSON for collections, maps and POJOs, names for enums, strings for UUIDs).
+     * The codec also applies to subtypes. Register before the first {@link #repo(Class)}
+     * call for an entity that uses the type.
+     * @param type field type
+     * @param codec thread-safe codec
+     */
+    <T> void registerCodec(Class<T> type, FieldCodec<T> codec);
+
+    /**
+     * Register a data migration step for an entity annotated with {@code @EntityVersion}.
+     * When {@link #repo(Class)} finds the stored version behind the annotated one, the
+     * pending steps rewrite existing rows in the background in small keyset chunks. Each
+     * chunk is its own short transaction, and progress is checkpointed so a restart
+     * resumes where it stopped. Steps must form a contiguous chain from the stored version
+     * to the annotated one; while a step is missing nothing runs and the stored version is
+     * left unchanged. Registering after {@link #repo(Class)} starts the pending steps then.
+     * @param entityType entity class
+     * @param migration the step
+     */
+    void registerMigration(Class<?> entityType, EntityMigration migration);
+
+    /**
+     * Run work as one unit of work on the calling thread.
+     * <p>
+     * Every repository call made inside shares a single primary connection per datasource
+     * and its prepared statements, and everything commits once when work returns. Reads
+     * inside the unit use that connection, so they see the unit's own writes. Any exception
+     * rolls the whole unit back. Nested calls join the outer unit. Write-behind buffering is
+     * bypassed inside a unit of work; counter increments are not part of it. A unit that
+     * touches several datasources commits them one after another, which is not atomic.
+     * @param work the operation
+     * @return the value returned by work
+     */
+    <R> R inTransaction(Supplier<R> work);
+
+    /** Variant of {@link #inTransaction(Supplier)} without a result. */
+    default void inTransaction(Runnable work) {
+        inTransaction(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run {@link #inTransaction(Supplier)} on the database executor.
+     * @param work the operation
+     * @return future completing with the result after commit
+     */
+    <R> CompletableFuture<R> inTransactionAsync(Supplier<R> work);
+
     /**
      * Perform pending schema migrations if supported by the implementation.
      * No-op if unsupported.
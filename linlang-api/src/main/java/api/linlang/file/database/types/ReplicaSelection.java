@@ -0,0 +1,4 @@
+package api.linlang.file.database.types;
+
+// —— 只读副本的选择策略 —— //
+public enum ReplicaSelection { ROUND_ROBIN, LEAST_LATENCY }
@@ -115,6 +115,62 @@ public class LinlangInternalMessageKeys {
         @I18nComment(locale = "zh_CN", lines = "落盘失败")
         @I18nComment(locale = "en_GB", lines = "persistence failed")
         public String flushFailed = "落盘失败：{data}，原因：{reason}";
+
+        @I18nComment(locale = "zh_CN", lines = "延迟写条目被拒绝并丢弃")
+        @I18nComment(locale = "en_GB", lines = "write-behind entry rejected and dropped")
+        public String writeBehindRejected = "延迟写条目被拒绝并丢弃：{data} {id}，原因：{reason}";
+
+        @I18nComment(locale = "zh_CN", lines = "主线程上执行了数据库调用")
+        @I18nComment(locale = "en_GB", lines = "database call on the main thread")
+        public String mainThreadJdbc = "主线程数据库调用：{site} 耗时 {ms}ms，SQL：{sql}（期间省略 {suppressed} 次）";
+
+        @I18nComment(locale = "zh_CN", lines = "主线程数据库调用汇总")
+        @I18nComment(locale = "en_GB", lines = "main thread database call summary")
+        public String mainThreadSummary = "主线程数据库调用汇总：{site} 共 {count} 次，累计 {ms}ms";
+
+        @I18nComment(locale = "zh_CN", lines = "数据库熔断，写入改记本地日志")
+        @I18nComment(locale = "en_GB", lines = "database circuit opened, writes go to the local journal")
+        public String breakerOpen = "数据库不可达或过慢，已熔断 {ms}ms；写入暂记本地日志";
+
+        @I18nComment(locale = "zh_CN", lines = "数据库恢复")
+        @I18nComment(locale = "en_GB", lines = "database recovered")
+        public String breakerClosed = "数据库已恢复";
+
+        @I18nComment(locale = "zh_CN", lines = "本地日志已回放")
+        @I18nComment(locale = "en_GB", lines = "local journal replayed")
+        public String journalReplayed = "已回放本地日志 {count} 条，耗时 {ms}ms，剩余 {left} 条";
+
+        @I18nComment(locale = "zh_CN", lines = "本地日志回放失败")
+        @I18nComment(locale = "en_GB", lines = "journal replay failed")
+        public String journalReplayFailed = "本地日志回放失败，稍后重试：{reason}";
+
+        @I18nComment(locale = "zh_CN", lines = "本地日志记录被数据库拒绝")
+        @I18nComment(locale = "en_GB", lines = "journal record rejected by the database")
+        public String journalRejected = "本地日志记录被拒绝并跳过：表 {table}，原因：{reason}";
+
+        @I18nComment(locale = "zh_CN", lines = "数据库已在线备份")
+        @I18nComment(locale = "en_GB", lines = "database backed up online")
+        public String backupOk = "已备份数据库：{file}（{ms}ms）";
+
+        @I18nComment(locale = "zh_CN", lines = "数据库备份失败")
+        @I18nComment(locale = "en_GB", lines = "database backup failed")
+        public String backupFailed = "数据库备份失败：{reason}";
+
+        @I18nComment(locale = "zh_CN", lines = "关闭时压缩数据库失败")
+        @I18nComment(locale = "en_GB", lines = "database compaction on close failed")
+        public String compactFailed = "关闭时压缩数据库失败：{reason}";
+
+        @I18nComment(locale = "zh_CN", lines = "实体数据迁移完成一步")
+        @I18nComment(locale = "en_GB", lines = "entity data migration step finished")
+        public String migrationStep = "已迁移表 {table}：v{from} → v{to}，改写 {rows} 行，耗时 {ms}ms";
+
+        @I18nComment(locale = "zh_CN", lines = "实体数据迁移缺少步骤，未执行")
+        @I18nComment(locale = "en_GB", lines = "entity data migration chain incomplete, not run")
+        public String migrationIncomplete = "表 {table} 缺少从 v{from} 起的迁移步骤（目标 v{to}），暂不迁移";
+
+        @I18nComment(locale = "zh_CN", lines = "数据迁移失败")
+        @I18nComment(locale = "en_GB", lines = "data migration failed")
+        public String migrationFailed = "表 {table} 数据迁移失败，下次启动从断点继续：{reason}";
     }
 
     public static class LinCommand {
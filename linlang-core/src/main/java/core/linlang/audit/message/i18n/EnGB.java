@@ -50,6 +50,34 @@ public class EnGB extends LinlangInternalMessageKeys implements LocaleProvider<L
                 "The database {data} has been stored on the disk";
         this.linData.flushFailed =
                 "Database {data} failed to stored, reason: {reason}";
+        this.linData.writeBehindRejected =
+                "Write-behind entry rejected and dropped: {data} {id}, reason: {reason}";
+        this.linData.mainThreadJdbc =
+                "Database call on main thread at {site} took {ms}ms, SQL: {sql} ({suppressed} more suppressed)";
+        this.linData.mainThreadSummary =
+                "Main thread database calls at {site}: {count} call(s), {ms}ms total";
+        this.linData.breakerOpen =
+                "Database unreachable or slow, circuit open for {ms}ms; writes go to the local journal";
+        this.linData.breakerClosed =
+                "Database recovered";
+        this.linData.journalReplayed =
+                "Replayed {count} journal record(s) in {ms}ms, {left} left";
+        this.linData.journalReplayFailed =
+                "Journal replay failed, will retry: {reason}";
+        this.linData.journalRejected =
+                "Journal record for table {table} rejected and skipped: {reason}";
+        this.linData.backupOk =
+                "Database backed up to {file} ({ms}ms)";
+        this.linData.backupFailed =
+                "Database backup failed: {reason}";
+        this.linData.compactFailed =
+                "Database compaction on close failed: {reason}";
+        this.linData.migrationStep =
+                "Migrated table {table} from v{from} to v{to}, {rows} row(s) rewritten in {ms}ms";
+        this.linData.migrationIncomplete =
+                "Table {table} has no migration step from v{from} (target v{to}); migration not run";
+        this.linData.migrationFailed =
+                "Data migration of table {table} failed, will resume from its checkpoint on next start: {reason}";
 
         // —— LinCommand —— //
         this.linCommand.commandSetPrefix =
@@ -51,6 +51,34 @@ public class ZhCN extends LinlangInternalMessageKeys implements LocaleProvider<L
                 "数据库 {data} 已落盘";
         this.linData.flushFailed =
                 "数据库 {data} 落盘失败，原因：{reason}";
+        this.linData.writeBehindRejected =
+                "延迟写条目被拒绝并丢弃：{data} {id}，原因：{reason}";
+        this.linData.mainThreadJdbc =
+                "主线程数据库调用：{site} 耗时 {ms}ms，SQL：{sql}（期间省略 {suppressed} 次）";
+        this.linData.mainThreadSummary =
+                "主线程数据库调用汇总：{site} 共 {count} 次，累计 {ms}ms";
+        this.linData.breakerOpen =
+                "数据库不可达或过慢，已熔断 {ms}ms；写入暂记本地日志";
+        this.linData.breakerClosed =
+                "数据库已恢复";
+        this.linData.journalReplayed =
+                "已回放本地日志 {count} 条，耗时 {ms}ms，剩余 {left} 条";
+        this.linData.journalReplayFailed =
+                "本地日志回放失败，稍后重试：{reason}";
+        this.linData.journalRejected =
+                "本地日志记录被拒绝并跳过：表 {table}，原因：{reason}";
+        this.linData.backupOk =
+                "已备份数据库：{file}（{ms}ms）";
+        this.linData.backupFailed =
+                "数据库备份失败：{reason}";
+        this.linData.compactFailed =
+                "关闭时压缩数据库失败：{reason}";
+        this.linData.migrationStep =
+                "已迁移表 {table}：v{from} → v{to}，改写 {rows} 行，耗时 {ms}ms";
+        this.linData.migrationIncomplete =
+                "表 {table} 缺少从 v{from} 起的迁移步骤（目标 v{to}），暂不迁移";
+        this.linData.migrationFailed =
+                "表 {table} 数据迁移失败，下次启动从断点继续：{reason}";
 
         // —— LinCommand —— //
         this.linCommand.commandSetPrefix =
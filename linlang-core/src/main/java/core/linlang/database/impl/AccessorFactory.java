@@ -0,0 +1,30 @@
+package core.linlang.database.impl;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * 实体访问层的构建入口。
+ * 默认实现基于 {@link java.lang.invoke.MethodHandle}；替换实现（例如生成隐藏类）只需在
+ * {@link EntityPlan#of(Class, String, AccessorFactory)} 处传入。
+ */
+interface AccessorFactory {
+
+    /** 为单列生成读写器；ordinal 为 SELECT 结果中的序号 */
+    ColumnAccessor column(Field field, ValueConverter conv, int ordinal);
+
+    /** 为实体生成物化器 */
+    <T> EntityAccessor<T> entity(Class<T> type, List<EntityPlan.ColumnPlan> columns);
+
+    AccessorFactory METHOD_HANDLES = new AccessorFactory() {
+        @Override
+        public ColumnAccessor column(Field field, ValueConverter conv, int ordinal) {
+            return ColumnAccessor.of(field, conv, ordinal);
+        }
+
+        @Override
+        public <T> EntityAccessor<T> entity(Class<T> type, List<EntityPlan.ColumnPlan> columns) {
+            return EntityAccessor.of(type, columns);
+        }
+    };
+}
@@ -0,0 +1,116 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.dto.Criteria;
+import api.linlang.file.database.dto.Page;
+import api.linlang.file.database.dto.QuerySpec;
+import api.linlang.file.database.repo.AsyncRepository;
+import api.linlang.file.database.repo.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+/**
+ * 将同步仓库的每个方法提交到 {@link DbExecutor} 上执行。
+ */
+final class AsyncRepositoryImpl<T, ID> implements AsyncRepository<T, ID> {
+    private final Repository<T, ID> repo;
+    private final DbExecutor executor;
+
+    AsyncRepositoryImpl(Repository<T, ID> repo, DbExecutor executor) {
+        this.repo = repo;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<T> save(T e) {
+        return executor.submit(() -> repo.save(e));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteById(ID id) {
+        return executor.submit(() -> { repo.deleteById(id); return null; });
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> findById(ID id) {
+        return executor.submit(() -> repo.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll() {
+        return executor.submit(repo::findAll);
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> query(QuerySpec spec) {
+        return executor.submit(() -> repo.query(spec));
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> query(Criteria criteria) {
+        return executor.submit(() -> repo.query(criteria));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> find(Criteria criteria) {
+        return executor.submit(() -> repo.find(criteria));
+    }
+
+    @Override
+    public CompletableFuture<Long> count() {
+        return executor.submit(repo::count);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsById(ID id) {
+        return executor.submit(() -> repo.existsById(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAll() {
+        return executor.submit(() -> { repo.deleteAll(); return null; });
+    }
+
+    @Override
+    public CompletableFuture<Void> saveAll(Collection<T> entities) {
+        return executor.submit(() -> { repo.saveAll(entities); return null; });
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> findOneWhere(String column, Object value) {
+        return executor.submit(() -> repo.findOneWhere(column, value));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAllWhere(String where, Object... params) {
+        return executor.submit(() -> repo.findAllWhere(where, params));
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return executor.submit(() -> { repo.flush(); return null; });
+    }
+
+    @Override
+    public CompletableFuture<Long> readCounter(ID id, String column) {
+        return executor.submit(() -> repo.readCounter(id, column));
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> retryOnConflict(ID id, int maxAttempts, UnaryOperator<T> change) {
+        return executor.submit(() -> repo.retryOnConflict(id, maxAttempts, change));
+    }
+
+    @Override
+    public Repository<T, ID> blocking() {
+        return repo;
+    }
+
+    @Override
+    public String toString() {
+        return "async:" + repo;
+    }
+}
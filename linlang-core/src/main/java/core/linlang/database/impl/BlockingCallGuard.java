@@ -0,0 +1,135 @@
+package core.linlang.database.impl;
+
+import api.linlang.audit.LinLog;
+import core.linlang.audit.message.LinMsg;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 主线程 JDBC 检测器。
+ * <p>
+ * 由适配层登记“tick 线程”判定（Bukkit 下为 {@code Bukkit::isPrimaryThread}）。开启后，
+ * 在 tick 线程上发生的每次数据库调用都会记录调用点、SQL 与耗时：
+ * <ul>
+ *   <li>{@link Mode#WARN}：经 {@link LinLog} 告警，同一调用点按间隔限流，并按调用点累计汇总；</li>
+ *   <li>{@link Mode#STRICT}：直接抛出 {@link IllegalStateException}，用于测试环境。</li>
+ * </ul>
+ * 默认 {@link Mode#OFF}，不做任何检测。
+ */
+public final class BlockingCallGuard {
+
+    public enum Mode { OFF, WARN, STRICT }
+
+    /** 按调用点累计的统计 */
+    public static final class SiteStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final AtomicLong lastWarn = new AtomicLong(Long.MIN_VALUE);
+        final LongAdder suppressed = new LongAdder();
+        volatile String lastSql;
+
+        public long calls() { return calls.sum(); }
+        public long totalMillis() { return nanos.sum() / 1_000_000L; }
+        public String lastSql() { return lastSql; }
+    }
+
+    private static final long NOT_TRACKED = -1L;
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private volatile Mode mode = Mode.OFF;
+    private volatile BooleanSupplier tickThread = () -> false;
+    private volatile long warnIntervalNanos = 10_000_000_000L;
+    private final Map<String, SiteStats> sites = new ConcurrentHashMap<>();
+
+    public BlockingCallGuard mode(Mode mode) {
+        this.mode = mode == null ? Mode.OFF : mode;
+        return this;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /** 登记 tick 线程判定 */
+    public BlockingCallGuard tickThread(BooleanSupplier onTickThread) {
+        this.tickThread = onTickThread == null ? () -> false : onTickThread;
+        return this;
+    }
+
+    /** 同一调用点两次告警的最小间隔 */
+    public BlockingCallGuard warnInterval(long millis) {
+        this.warnIntervalNanos = Math.max(0L, millis) * 1_000_000L;
+        return this;
+    }
+
+    /** 调用前：不在 tick 线程时几乎零开销 */
+    long enter(String sql) {
+        Mode m = mode;
+        if (m == Mode.OFF || !tickThread.getAsBoolean()) return NOT_TRACKED;
+        if (m == Mode.STRICT) {
+            throw new IllegalStateException("JDBC call on tick thread at " + callSite() + ": " + sql);
+        }
+        return System.nanoTime();
+    }
+
+    /** 调用后：记录耗时并按限流告警 */
+    void exit(long token, String sql) {
+        if (token == NOT_TRACKED) return;
+        long took = System.nanoTime() - token;
+        String site = callSite();
+        SiteStats st = sites.computeIfAbsent(site, k -> new SiteStats());
+        st.calls.increment();
+        st.nanos.add(took);
+        st.lastSql = sql;
+
+        long now = System.nanoTime();
+        long last = st.lastWarn.get();
+        if (last == Long.MIN_VALUE || now - last >= warnIntervalNanos) {
+            if (st.lastWarn.compareAndSet(last, now)) {
+                long suppressed = st.suppressed.sumThenReset();
+                LinLog.warn(LinMsg.k("linData.mainThreadJdbc"),
+                        "site", site, "ms", took / 1_000_000L, "sql", sql, "suppressed", suppressed);
+                return;
+            }
+        }
+        st.suppressed.increment();
+    }
+
+    /** 按累计耗时降序的调用点汇总 */
+    public Map<String, SiteStats> summary() {
+        Map<String, SiteStats> out = new LinkedHashMap<>();
+        sites.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, SiteStats> e) -> e.getValue().nanos.sum()).reversed())
+                .forEach(e -> out.put(e.getKey(), e.getValue()));
+        return out;
+    }
+
+    /** 输出汇总到日志 */
+    public void logSummary() {
+        summary().forEach((site, st) -> LinLog.warn(LinMsg.k("linData.mainThreadSummary"),
+                "site", site, "count", st.calls(), "ms", st.totalMillis()));
+    }
+
+    public void reset() {
+        sites.clear();
+    }
+
+    /** 调用栈中第一个不属于数据层、API 层（含接口默认方法）与 JDK 的帧 */
+    private static String callSite() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> {
+                    String cn = f.getClassName();
+                    return !cn.startsWith("core.linlang.database.") && !cn.startsWith("api.linlang.")
+                            && !cn.startsWith("java.") && !cn.startsWith("jdk.") && !cn.startsWith("sun.");
+                })
+                .findFirst()
+                .map(f -> f.getClassName() + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .orElse("unknown"));
+    }
+}
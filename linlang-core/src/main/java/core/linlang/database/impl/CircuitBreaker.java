@@ -0,0 +1,108 @@
+package core.linlang.database.impl;
+
+import api.linlang.audit.LinLog;
+import core.linlang.audit.message.LinMsg;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据库熔断器。
+ * <p>
+ * 连续 {@link #FAILURES} 次连接类失败或借连接过慢后打开：此后的调用不再借连接而立即失败，
+ * 避免每次都在连接池上等满超时。打开 {@code openMillis} 后放行一次探测（半开），
+ * 探测成功即关闭，失败则重新计时。
+ */
+final class CircuitBreaker {
+
+    static final int FAILURES = 3;
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final long slowNanos;
+    private final long openNanos;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long openedAt;
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    CircuitBreaker(long slowMillis, long openMillis) {
+        this.slowNanos = slowMillis * 1_000_000L;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    /** 是否放行本次调用；打开期满后只放行一次探测 */
+    boolean allow() {
+        State s = state.get();
+        if (s == State.CLOSED) return true;
+        if (s == State.OPEN && System.nanoTime() - openedAt >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    boolean closed() {
+        return state.get() == State.CLOSED;
+    }
+
+    State state() {
+        return state.get();
+    }
+
+    /** 数据库已应答；借连接的等待超过阈值按失败计（语句执行耗时不计，批量与大查询本就耗时） */
+    void success(long waitedNanos) {
+        if (waitedNanos > slowNanos) {
+            failure();
+            return;
+        }
+        if (failures.get() != 0) failures.set(0);
+        if (state.get() != State.CLOSED && state.getAndSet(State.CLOSED) != State.CLOSED) {
+            LinLog.info(LinMsg.k("linData.breakerClosed"));
+        }
+    }
+
+    void failure() {
+        if (state.get() == State.HALF_OPEN || failures.incrementAndGet() >= FAILURES) trip();
+    }
+
+    /** 连接类异常：连不上、连接断开或超时；约束冲突等语句错误不计入 */
+    static boolean unavailable(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException
+                    || t instanceof SQLRecoverableException || t instanceof SQLTimeoutException) {
+                return true;
+            }
+            if (t instanceof SQLException s && s.getSQLState() != null && s.getSQLState().startsWith("08")) return true;
+        }
+        return false;
+    }
+
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("breaker.state", (long) state.get().ordinal());
+        m.put("breaker.opened", opened.sum());
+        m.put("breaker.rejected", rejected.sum());
+        return m;
+    }
+
+    private void trip() {
+        openedAt = System.nanoTime();
+        if (state.getAndSet(State.OPEN) == State.CLOSED) {
+            opened.increment();
+            LinLog.warn(LinMsg.k("linData.breakerOpen"), "ms", openNanos / 1_000_000L);
+        }
+        failures.set(0);
+    }
+}
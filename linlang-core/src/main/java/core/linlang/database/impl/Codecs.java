@@ -0,0 +1,245 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Serialized;
+import api.linlang.file.database.codec.FieldCodec;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 复杂字段的编解码注册表。
+ * <p>
+ * 构建 {@link EntityPlan} 时按字段解析一次：注册的 {@link FieldCodec} 优先，其次枚举（按名称）、
+ * byte[]（大对象列），集合、Map、数组与非 JDK 类型按 JSON 存储。JSON 的读写器按字段的泛型类型预先建好，
+ * 热路径上不再查找类型。其余字段返回 null，仍由 {@link ValueConverter#forType} 处理。
+ */
+final class Codecs {
+
+    /** 未经 DataService 构建计划时使用的内置注册表 */
+    static final Codecs BUILT_IN = new Codecs();
+
+    /** 二进制格式首字节：后随原始 JSON 字节，或 4 字节原长 + Deflate 数据 */
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+
+    /** 字段的列类型与转换器 */
+    record Resolved(String sqlType, ValueConverter converter) {}
+
+    // 按字段读写，不依赖 getter/setter；新增字段后旧数据中缺少的键保持默认值，多余的键忽略
+    private final ObjectMapper mapper = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    private final Map<Class<?>, FieldCodec<?>> custom = new ConcurrentHashMap<>();
+
+    void register(Class<?> type, FieldCodec<?> codec) {
+        custom.put(type, codec);
+    }
+
+    /** 解析字段的编解码；无需特殊处理时返回 null */
+    Resolved resolve(Field f) {
+        Class<?> t = f.getType();
+        FieldCodec<?> c = customFor(t);
+        if (c != null) return new Resolved(c.sqlType(), wrap(c));
+        Serialized ser = f.getAnnotation(Serialized.class);
+        if (ser == null) {
+            if (t.isEnum()) return new Resolved("VARCHAR(64)", enumConverter(t));
+            if (t == byte[].class) return new Resolved("MEDIUMBLOB", BYTES);
+            if (!structured(t)) return null;
+        }
+        JavaType type = mapper.getTypeFactory().constructType(f.getGenericType());
+        if (ser != null && ser.value() == Serialized.Format.BINARY) {
+            return new Resolved("MEDIUMBLOB", binary(type, ser.compressAbove()));
+        }
+        return new Resolved("MEDIUMTEXT", json(type));
+    }
+
+    /** 精确类型优先，其次沿父类与接口查找 */
+    private FieldCodec<?> customFor(Class<?> t) {
+        if (custom.isEmpty()) return null;
+        FieldCodec<?> c = custom.get(t);
+        if (c != null) return c;
+        for (Map.Entry<Class<?>, FieldCodec<?>> en : custom.entrySet()) {
+            if (en.getKey().isAssignableFrom(t)) return en.getValue();
+        }
+        return null;
+    }
+
+    private static boolean structured(Class<?> t) {
+        if (t.isArray()) return true;
+        if (Collection.class.isAssignableFrom(t) || Map.class.isAssignableFrom(t)) return true;
+        if (t.isPrimitive()) return false;
+        String n = t.getName();
+        return !n.startsWith("java.") && !n.startsWith("javax.");
+    }
+
+    // —— 转换器 —— //
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ValueConverter wrap(FieldCodec<?> codec) {
+        FieldCodec<Object> c = (FieldCodec<Object>) codec;
+        return new ValueConverter() {
+            public Object toDb(Object v) { return v == null ? null : c.encode(v); }
+            public Object fromDb(Object v) { return v == null ? null : c.decode(v); }
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ValueConverter enumConverter(Class<?> t) {
+        Class<? extends Enum> type = (Class<? extends Enum>) t;
+        return new ValueConverter() {
+            public Object toDb(Object v) { return v == null ? null : ((Enum<?>) v).name(); }
+            public Object fromDb(Object v) { return v == null ? null : Enum.valueOf(type, text(v)); }
+        };
+    }
+
+    private static final ValueConverter BYTES = new ValueConverter() {
+        public Object toDb(Object v) { return v; }
+        public Object fromDb(Object v) { return v == null ? null : bytes(v); }
+    };
+
+    private ValueConverter json(JavaType type) {
+        ObjectReader reader = mapper.readerFor(type);
+        ObjectWriter writer = mapper.writerFor(type);
+        return new ValueConverter() {
+            public Object toDb(Object v) {
+                if (v == null) return null;
+                try {
+                    return writer.writeValueAsString(v);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            public Object fromDb(Object v) {
+                if (v == null) return null;
+                try {
+                    return reader.readValue(text(v));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    private ValueConverter binary(JavaType type, int compressAbove) {
+        ObjectReader reader = mapper.readerFor(type);
+        ObjectWriter writer = mapper.writerFor(type);
+        return new ValueConverter() {
+            public Object toDb(Object v) {
+                if (v == null) return null;
+                try {
+                    return pack(writer.writeValueAsBytes(v), compressAbove);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            public Object fromDb(Object v) {
+                if (v == null) return null;
+                try {
+                    return reader.readValue(unpack(bytes(v)));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    // —— 压缩 —— //
+
+    // 压缩器持有本地内存，按线程复用
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    static byte[] pack(byte[] raw, int compressAbove) {
+        if (compressAbove <= 0 || raw.length <= compressAbove) {
+            byte[] out = new byte[raw.length + 1];
+            out[0] = RAW;
+            System.arraycopy(raw, 0, out, 1, raw.length);
+            return out;
+        }
+        Deflater d = DEFLATER.get();
+        d.reset();
+        d.setInput(raw);
+        d.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        out.write(DEFLATED);
+        out.writeBytes(ByteBuffer.allocate(4).putInt(raw.length).array());
+        byte[] buf = new byte[Math.min(raw.length, 8192)];
+        while (!d.finished()) out.write(buf, 0, d.deflate(buf));
+        return out.toByteArray();
+    }
+
+    static byte[] unpack(byte[] packed) throws IOException {
+        if (packed.length == 0) throw new IOException("Empty serialized value");
+        if (packed[0] == RAW) return Arrays.copyOfRange(packed, 1, packed.length);
+        if (packed[0] != DEFLATED || packed.length < 5) throw new IOException("Unknown serialized format " + packed[0]);
+        int len = ByteBuffer.wrap(packed, 1, 4).getInt();
+        Inflater inf = INFLATER.get();
+        inf.reset();
+        inf.setInput(packed, 5, packed.length - 5);
+        byte[] raw = new byte[len];
+        try {
+            int n = 0;
+            while (n < len) {
+                int r = inf.inflate(raw, n, len - n);
+                if (r == 0 && (inf.finished() || inf.needsInput())) break;
+                n += r;
+            }
+            if (n != len) throw new IOException("Truncated serialized value");
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return raw;
+    }
+
+    // —— 驱动返回值 —— //
+
+    /** 文本列：H2 的大文本以 Clob 返回 */
+    private static String text(Object v) {
+        if (v instanceof String s) return s;
+        if (v instanceof Clob c) {
+            try {
+                return c.getSubString(1, (int) c.length());
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return v.toString();
+    }
+
+    /** 二进制列：H2 的大对象以 Blob 返回 */
+    private static byte[] bytes(Object v) {
+        if (v instanceof byte[] b) return b;
+        if (v instanceof Blob b) {
+            try {
+                return b.getBytes(1, (int) b.length());
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        throw new IllegalStateException("Expected binary column value, got " + v.getClass().getName());
+    }
+}
@@ -0,0 +1,212 @@
+package core.linlang.database.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 单列读写器。
+ * <p>
+ * 由 {@link AccessorFactory} 在构建计划时生成一次；int/long/double 原始类型字段走专用子类，
+ * 直接调用 {@code rs.getInt}/{@code ps.setLong} 等方法，避免装箱。
+ */
+abstract class ColumnAccessor {
+    protected final ValueConverter conv;
+    protected final int ordinal;
+
+    ColumnAccessor(ValueConverter conv, int ordinal) {
+        this.conv = conv;
+        this.ordinal = ordinal;
+    }
+
+    /** 读取字段值（装箱） */
+    abstract Object get(Object entity);
+
+    /** 写入字段值（装箱）；不可变字段抛出 {@link UnsupportedOperationException} */
+    abstract void set(Object entity, Object value);
+
+    /** 是否支持 {@link #set}/{@link #readInto} */
+    abstract boolean writable();
+
+    /** 将实体字段绑定为语句参数 */
+    void bind(PreparedStatement ps, int idx, Object entity) throws SQLException {
+        ps.setObject(idx, conv.toDb(get(entity)));
+    }
+
+    /** 从结果集当前行读取本列并写入实体 */
+    void readInto(ResultSet rs, Object entity) throws SQLException {
+        set(entity, readValue(rs));
+    }
+
+    /** 从结果集当前行读取本列（装箱），用于构造器物化 */
+    Object readValue(ResultSet rs) throws SQLException {
+        return conv.fromDb(rs.getObject(ordinal));
+    }
+
+    static ColumnAccessor of(Field f, ValueConverter conv, int ordinal) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            f.setAccessible(true);
+            MethodHandle getter = lookup.unreflectGetter(f).asType(MethodType.methodType(Object.class, Object.class));
+            MethodHandle rawGetter = lookup.unreflectGetter(f);
+            MethodHandle rawSetter = null;
+            if (!Modifier.isFinal(f.getModifiers())) rawSetter = lookup.unreflectSetter(f);
+            else if (!f.getDeclaringClass().isRecord()) rawSetter = finalSetter(lookup, f);
+
+            Class<?> t = f.getType();
+            if (t == int.class) return new IntAccessor(conv, ordinal, getter, rawGetter, rawSetter);
+            if (t == long.class) return new LongAccessor(conv, ordinal, getter, rawGetter, rawSetter);
+            if (t == double.class) return new DoubleAccessor(conv, ordinal, getter, rawGetter, rawSetter);
+            MethodHandle setter = rawSetter == null ? null
+                    : rawSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return new ObjectAccessor(conv, ordinal, getter, setter);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access field " + f, e);
+        }
+    }
+
+    /**
+     * final 实例字段在 setAccessible 之后仍可反射写入（record 与隐藏类除外），
+     * 以便带无参构造器、字段声明为 final 的实体继续走逐列写字段的物化方式；不可写时返回 null。
+     */
+    private static MethodHandle finalSetter(MethodHandles.Lookup lookup, Field f) {
+        if (Modifier.isStatic(f.getModifiers())) return null;
+        try {
+            return lookup.unreflectSetter(f);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException re) return re;
+        if (t instanceof Error err) throw err;
+        return new IllegalStateException(t);
+    }
+
+    // —— 实现 —— //
+
+    static final class ObjectAccessor extends ColumnAccessor {
+        private final MethodHandle getter;   // (Object)Object
+        private final MethodHandle setter;   // (Object,Object)void，可空
+
+        ObjectAccessor(ValueConverter conv, int ordinal, MethodHandle getter, MethodHandle setter) {
+            super(conv, ordinal);
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override Object get(Object entity) {
+            try { return (Object) getter.invokeExact(entity); } catch (Throwable t) { throw rethrow(t); }
+        }
+
+        @Override void set(Object entity, Object value) {
+            if (setter == null) throw new UnsupportedOperationException("final field");
+            try { setter.invokeExact(entity, value); } catch (Throwable t) { throw rethrow(t); }
+        }
+
+        @Override boolean writable() { return setter != null; }
+    }
+
+    /** 原始类型公共部分：装箱读写经由 asType 适配后的句柄 */
+    abstract static class PrimitiveAccessor extends ColumnAccessor {
+        private final MethodHandle boxedGetter;
+        private final MethodHandle boxedSetter;
+
+        PrimitiveAccessor(ValueConverter conv, int ordinal, MethodHandle boxedGetter, MethodHandle rawSetter) {
+            super(conv, ordinal);
+            this.boxedGetter = boxedGetter;
+            this.boxedSetter = rawSetter == null ? null
+                    : rawSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+
+        @Override Object get(Object entity) {
+            try { return (Object) boxedGetter.invokeExact(entity); } catch (Throwable t) { throw rethrow(t); }
+        }
+
+        @Override void set(Object entity, Object value) {
+            if (boxedSetter == null) throw new UnsupportedOperationException("final field");
+            if (value == null) return; // 原始类型保持默认值
+            try { boxedSetter.invokeExact(entity, conv.fromDb(value)); } catch (Throwable t) { throw rethrow(t); }
+        }
+
+        @Override boolean writable() { return boxedSetter != null; }
+    }
+
+    static final class IntAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;   // (Object)int
+        private final MethodHandle setter;   // (Object,int)void
+
+        IntAccessor(ValueConverter conv, int ordinal, MethodHandle boxed, MethodHandle raw, MethodHandle rawSetter) {
+            super(conv, ordinal, boxed, rawSetter);
+            this.getter = raw.asType(MethodType.methodType(int.class, Object.class));
+            this.setter = rawSetter == null ? null : rawSetter.asType(MethodType.methodType(void.class, Object.class, int.class));
+        }
+
+        @Override void bind(PreparedStatement ps, int idx, Object entity) throws SQLException {
+            int v;
+            try { v = (int) getter.invokeExact(entity); } catch (Throwable t) { throw rethrow(t); }
+            ps.setInt(idx, v);
+        }
+
+        @Override void readInto(ResultSet rs, Object entity) throws SQLException {
+            int v = rs.getInt(ordinal);
+            try { setter.invokeExact(entity, v); } catch (Throwable t) { throw rethrow(t); }
+        }
+
+        @Override Object readValue(ResultSet rs) throws SQLException { return rs.getInt(ordinal); }
+    }
+
+    static final class LongAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;   // (Object)long
+        private final MethodHandle setter;   // (Object,long)void
+
+        LongAccessor(ValueConverter conv, int ordinal, MethodHandle boxed, MethodHandle raw, MethodHandle rawSetter) {
+            super(conv, ordinal, boxed, rawSetter);
+            this.getter = raw.asType(MethodType.methodType(long.class, Object.class));
+            this.setter = rawSetter == null ? null : rawSetter.asType(MethodType.methodType(void.class, Object.class, long.class));
+        }
+
+        @Override void bind(PreparedStatement ps, int idx, Object entity) throws SQLException {
+            long v;
+            try { v = (long) getter.invokeExact(entity); } catch (Throwable t) { throw rethrow(t); }
+            ps.setLong(idx, v);
+        }
+
+        @Override void readInto(ResultSet rs, Object entity) throws SQLException {
+            long v = rs.getLong(ordinal);
+            try { setter.invokeExact(entity, v); } catch (Throwable t) { throw rethrow(t); }
+        }
+
+        @Override Object readValue(ResultSet rs) throws SQLException { return rs.getLong(ordinal); }
+    }
+
+    static final class DoubleAccessor extends PrimitiveAccessor {
+        private final MethodHandle getter;   // (Object)double
+        private final MethodHandle setter;   // (Object,double)void
+
+        DoubleAccessor(ValueConverter conv, int ordinal, MethodHandle boxed, MethodHandle raw, MethodHandle rawSetter) {
+            super(conv, ordinal, boxed, rawSetter);
+            this.getter = raw.asType(MethodType.methodType(double.class, Object.class));
+            this.setter = rawSetter == null ? null : rawSetter.asType(MethodType.methodType(void.class, Object.class, double.class));
+        }
+
+        @Override void bind(PreparedStatement ps, int idx, Object entity) throws SQLException {
+            double v;
+            try { v = (double) getter.invokeExact(entity); } catch (Throwable t) { throw rethrow(t); }
+            ps.setDouble(idx, v);
+        }
+
+        @Override void readInto(ResultSet rs, Object entity) throws SQLException {
+            double v = rs.getDouble(ordinal);
+            try { setter.invokeExact(entity, v); } catch (Throwable t) { throw rethrow(t); }
+        }
+
+        @Override Object readValue(ResultSet rs) throws SQLException { return rs.getDouble(ordinal); }
+    }
+}
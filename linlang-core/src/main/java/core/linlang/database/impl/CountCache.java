@@ -0,0 +1,69 @@
+package core.linlang.database.impl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单表 COUNT 结果缓存。
+ * <p>
+ * 每次经仓库的写入递增写纪元；条目记录计数时观察到的纪元，纪元不一致即视为失效，
+ * 因此写路径只做一次自增，不需要遍历或加锁。事务单元内的写入在提交后再递增一次，
+ * 单元内的计数不进缓存。绕过仓库直接改表的写入无法感知。
+ */
+final class CountCache {
+
+    /** 计数条件：where 片段与参数 */
+    record Key(String where, List<Object> params) {}
+
+    private record Entry(long epoch, long count) {}
+
+    static final Key ALL = new Key(null, List.of());
+
+    private final int maxKeys;
+    private final AtomicLong epoch = new AtomicLong();
+    private final Map<Key, Entry> counts = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    CountCache(int maxKeys) {
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    /** 查询前取得当前纪元，写回时原样传给 {@link #put} */
+    long epoch() {
+        return epoch.get();
+    }
+
+    /** 经仓库写入后调用 */
+    void written() {
+        epoch.incrementAndGet();
+    }
+
+    /** @return 有效的缓存计数，无则 null */
+    Long get(Key key) {
+        Entry e = counts.get(key);
+        if (e != null && e.epoch == epoch.get()) {
+            hits.increment();
+            return e.count;
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(Key key, long observedEpoch, long count) {
+        if (observedEpoch != epoch.get()) return;            // 期间已有写入
+        if (counts.size() >= maxKeys) counts.clear();
+        counts.put(key, new Entry(observedEpoch, count));
+    }
+
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("count.hits", hits.sum());
+        m.put("count.misses", misses.sum());
+        return m;
+    }
+}
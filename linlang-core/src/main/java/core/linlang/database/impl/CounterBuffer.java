@@ -0,0 +1,143 @@
+package core.linlang.database.impl;
+
+import api.linlang.audit.LinLog;
+import core.linlang.audit.message.LinMsg;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 计数列增量的内存合并。
+ * <p>
+ * 每个 (ID, 列) 一个累加单元，并发累加只在各自单元上 CAS，互不争用；落盘时以 getAndSet 取走并退役单元，
+ * 此后的累加会建立新单元，不会丢失。
+ * <p>
+ * 读取（库中值 + 未落盘增量）须与落盘错开：落盘前后各推进一次戳（进行中为奇数），
+ * {@link #read} 在戳未变化时才采用结果，否则等当前落盘结束后在锁内重读，
+ * 不会把已写入库的增量再加一次，也不会漏掉刚写入的增量。
+ */
+final class CounterBuffer {
+
+    /** 批量写出回调：在一个事务内执行全部 c = c + ? */
+    @FunctionalInterface
+    interface Writer {
+        void write(Map<Key, Long> deltas);
+    }
+
+    /** column 为计数列名 */
+    record Key(Object id, String column) {}
+
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final String name;
+    private final Writer writer;
+    private final ScheduledFuture<?> tick;
+    private final Map<Key, AtomicLong> cells = new ConcurrentHashMap<>();
+    private final AtomicLong stamp = new AtomicLong();   // 落盘进行中为奇数
+    private final Object drainLock = new Object();
+
+    private final LongAdder increments = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+
+    CounterBuffer(String name, Writer writer, long flushMillis, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.writer = writer;
+        long period = Math.max(50L, flushMillis);
+        this.tick = scheduler.scheduleWithFixedDelay(this::drainQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void add(Key key, long delta) {
+        increments.increment();
+        merge(key, delta);
+    }
+
+    private void merge(Key key, long delta) {
+        for (;;) {
+            AtomicLong cell = cells.computeIfAbsent(key, k -> new AtomicLong());
+            for (long v = cell.get(); v != RETIRED; v = cell.get()) {
+                if (cell.compareAndSet(v, v + delta)) return;
+            }
+            cells.remove(key, cell);   // 单元已被落盘退役，换新单元重试
+        }
+    }
+
+    /** 库中值（stored 读取）加上尚未落盘的增量 */
+    long read(Key key, LongSupplier stored) {
+        long s = stamp.get();
+        if ((s & 1L) == 0L) {
+            long v = stored.getAsLong() + pending(key);
+            if (stamp.get() == s) return v;       // 期间没有落盘
+        }
+        // 持锁期间不会落盘
+        synchronized (drainLock) {
+            return stored.getAsLong() + pending(key);
+        }
+    }
+
+    /** 单元中尚未取走的增量 */
+    private long pending(Key key) {
+        AtomicLong cell = cells.get(key);
+        long v = cell == null ? 0L : cell.get();
+        return v == RETIRED ? 0L : v;
+    }
+
+    boolean isEmpty() {
+        return cells.isEmpty();
+    }
+
+    /** 同步落盘；失败时增量加回并抛出 */
+    void drain() {
+        synchronized (drainLock) {
+            if (cells.isEmpty()) return;
+            stamp.incrementAndGet();
+            try {
+                Map<Key, Long> taken = new HashMap<>();
+                for (Map.Entry<Key, AtomicLong> en : cells.entrySet()) {
+                    long d = en.getValue().getAndSet(RETIRED);
+                    cells.remove(en.getKey(), en.getValue());
+                    if (d != 0L && d != RETIRED) taken.put(en.getKey(), d);
+                }
+                if (taken.isEmpty()) return;
+                try {
+                    writer.write(taken);
+                    flushedRows.add(taken.size());
+                } catch (RuntimeException ex) {
+                    taken.forEach(this::merge);
+                    throw ex;
+                }
+            } finally {
+                stamp.incrementAndGet();
+            }
+        }
+    }
+
+    /** 停止定时任务并同步落盘 */
+    void close() {
+        tick.cancel(false);
+        drain();
+    }
+
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("counters.pending", (long) cells.size());
+        m.put("counters.increments", increments.sum());
+        m.put("counters.flushedRows", flushedRows.sum());
+        return m;
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (Throwable e) {
+            LinLog.warn(LinMsg.k("linData.flushFailed"), "data", name, "reason", String.valueOf(e.getMessage()));
+        }
+    }
+}
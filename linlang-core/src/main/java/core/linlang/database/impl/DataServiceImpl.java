@@ -2,33 +2,63 @@ package core.linlang.database.impl;
 
 import api.linlang.audit.LinLog;
 import api.linlang.file.database.DataService;
-import api.linlang.file.database.annotations.Entity;
-import api.linlang.file.database.annotations.Transient;
-import api.linlang.file.database.annotations.Column;
-import api.linlang.file.database.annotations.Id;
-import api.linlang.file.database.annotations.NotNull;
 import api.linlang.file.file.path.PathResolver;
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
+import api.linlang.file.database.annotations.OnDataSource;
+import api.linlang.file.database.codec.FieldCodec;
+import api.linlang.file.database.id.IdGenerator;
+import api.linlang.file.database.migration.EntityMigration;
+import api.linlang.file.database.repo.AsyncRepository;
 import api.linlang.file.database.repo.Repository;
 import core.linlang.audit.message.LinMsg;
 import core.linlang.file.runtime.Binder;
 
 
-import java.lang.reflect.Field;
 import java.nio.file.Path;
 import java.nio.file.Files;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public final class DataServiceImpl implements DataService {
+    /** 未标注 @OnDataSource 的实体所用数据源的名称 */
+    public static final String DEFAULT_SOURCE = "default";
+
     private final Path dataDocRoot;
     private DbType mode = DbType.H2;
-    private HikariDataSource ds;
-    private final java.util.Set<Class<?>> registeredEntities = new java.util.LinkedHashSet<>();
+    private DbConfig cfg;
+    // 数据源：默认数据源在前，按名称取；各自一份仓库上下文
+    private DataSourceGroup main;
+    private final Map<String, DataSourceGroup> sources = new LinkedHashMap<>();
+    private final Map<String, RepoContext> contexts = new HashMap<>();
+    private final Map<String, SchemaFingerprints> schemas = new HashMap<>();   // 关闭结构指纹时为空
+    private final java.util.Set<Class<?>> registeredEntities = new java.util.concurrent.CopyOnWriteArraySet<>();
     private final Map<Class<?>, Repository<?, ?>> openRepos = new ConcurrentHashMap<>();
+    private final Map<Class<?>, EntityPlan<?>> plans = new ConcurrentHashMap<>();
+    private final Map<Class<?>, AsyncRepository<?, ?>> asyncRepos = new ConcurrentHashMap<>();
+    private DbExecutor executor;
+    private final BlockingCallGuard guard = new BlockingCallGuard();
+    private final Transactions transactions = new Transactions();
+    private final IdGenerators idGenerators = new IdGenerators();
+    private final Codecs codecs = new Codecs();
+    private final EntityMigrations migrations = new EntityMigrations(guard);
+    // 降级模式：本地写日志（各数据源另有熔断器），未启用时为 null
+    private WriteJournal journal;
+    private final Map<String, EntityPlan<?>> plansByTable = new ConcurrentHashMap<>();
+    private final Map<String, DataSourceGroup> sourcesByTable = new ConcurrentHashMap<>();
+    private final Map<String, String> replayUpserts = new ConcurrentHashMap<>();
+    private H2Store h2;                                   // 仅 H2
+    private ScheduledExecutorService backups;             // 未开启定时备份时为 null
+    // 后台写线程：延迟写落盘等定时任务
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "linlang-db-writer");
+        t.setDaemon(true);
+        return t;
+    });
 
 
     public DataServiceImpl() {
@@ -49,129 +79,436 @@ public final class DataServiceImpl implements DataService {
             throw new IllegalArgumentException("Unsupported DbType: " + type);
         }
         this.mode = type;
-        HikariConfig hc = new HikariConfig();
-        hc.setJdbcUrl(cfg.url());
-        hc.setUsername(cfg.user());
-        hc.setPassword(cfg.pass());
-        hc.setDriverClassName(type == DbType.H2 ? "org.h2.Driver" : "com.mysql.cj.jdbc.Driver");
-        hc.setMaximumPoolSize(Math.max(4, cfg.poolSize()));
-        hc.setMinimumIdle(Math.min(2, cfg.poolSize()));
-        this.ds = new HikariDataSource(hc);
+        this.cfg = cfg;
+        if (type == DbType.H2) this.h2 = new H2Store(dataDocRoot, cfg);
+        String url = h2 != null ? h2.url() : cfg.url();
+        this.main = new DataSourceGroup(DEFAULT_SOURCE, type, url, cfg, cfg, breakerFor(cfg));
+        sources.put(DEFAULT_SOURCE, main);
+        for (Map.Entry<String, DbConfig> en : cfg.datasources().entrySet()) {
+            DbConfig dc = en.getValue();
+            sources.put(en.getKey(), new DataSourceGroup(en.getKey(), DataSourceGroup.typeOf(dc.url(), type),
+                    dc.url(), dc, cfg, breakerFor(cfg)));
+        }
+        this.executor = new DbExecutor(cfg.asyncThreads(), cfg.asyncQueueDepth());
+        idGenerators.registerDefaults(cfg.nodeId());
+        migrations.throttle(cfg.backfillChunk(), cfg.backfillPauseMillis());
+        if (cfg.degradedMode()) {
+            try {
+                this.journal = new WriteJournal(dataDocRoot.resolve("journal"));
+            } catch (java.io.IOException e) {
+                throw new RuntimeException(e);
+            }
+            scheduler.scheduleWithFixedDelay(this::replayQuietly, 1000, 1000, java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
+        for (DataSourceGroup g : sources.values()) {
+            if (cfg.schemaCache()) schemas.put(g.name, new SchemaFingerprints(g.primary()));
+            contexts.put(g.name, new RepoContext(g, cfg.batchSize(), cfg.counterFlushMillis(),
+                    scheduler, guard, transactions, idGenerators, journal));
+        }
+        if (h2 != null && h2.local() && cfg.backupMillis() > 0) {
+            // 备份可能较久，单独线程，不拖延延迟写落盘
+            this.backups = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "linlang-db-backup");
+                t.setDaemon(true);
+                return t;
+            });
+            backups.scheduleWithFixedDelay(this::backupQuietly, cfg.backupMillis(), cfg.backupMillis(),
+                    java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
 
         // log init
         try {
-            LinLog.info(LinMsg.k("linData.dbInit"), "type", type, "url", cfg.url());
+            LinLog.info(LinMsg.k("linData.dbInit"), "type", type, "url", url);
         } catch (Throwable ignore) {}
     }
 
+    private static CircuitBreaker breakerFor(DbConfig cfg) {
+        return cfg.degradedMode() ? new CircuitBreaker(cfg.slowCallMillis(), cfg.breakerOpenMillis()) : null;
+    }
+
+    /** 实体所在的数据源：@OnDataSource 指定的命名数据源，否则为默认数据源 */
+    private DataSourceGroup sourceOf(Class<?> entityType) {
+        OnDataSource on = entityType.getAnnotation(OnDataSource.class);
+        if (on == null) return main;
+        DataSourceGroup g = sources.get(on.value());
+        if (g == null) {
+            throw new IllegalArgumentException("Unknown datasource '" + on.value() + "' on " + entityType.getName());
+        }
+        return g;
+    }
+
+    /**
+     * 立即在线备份本地 H2 库到 dataDocRoot/backup，写入不受影响。
+     * @return 备份文件
+     */
+    public Path backup() {
+        if (h2 == null || !h2.local()) throw new IllegalStateException("Online backup needs a local H2 database");
+        long start = System.nanoTime();
+        try {
+            Path file = h2.backup(main.primary());
+            LinLog.info(LinMsg.k("linData.backupOk"), "file", file, "ms", (System.nanoTime() - start) / 1_000_000L);
+            return file;
+        } catch (SQLException | java.io.IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void backupQuietly() {
+        try {
+            backup();
+        } catch (Throwable e) {
+            LinLog.warn(LinMsg.k("linData.backupFailed"), "reason", String.valueOf(e.getMessage()));
+        }
+    }
+
     @Override
     public void migrate() {
         for (Class<?> et : registeredEntities) {
-            Binder.BoundTable t = Binder.tableOf(et).orElse(null);
-            if (t == null) continue;
-            ensureTable(et, t.name());
-            try (Connection c = ds.getConnection()) {
-                DatabaseMetaData md = c.getMetaData();
-                Set<String> existing = new HashSet<>();
-                try (ResultSet rs = md.getColumns(c.getCatalog(), null, t.name(), null)) {
-                    while (rs.next()) existing.add(rs.getString("COLUMN_NAME"));
-                }
-                List<Col> cols = columns(et);
-                for (Col col : cols) {
-                    if (!existing.contains(col.name)) {
-                        String add = "ALTER TABLE `" + t.name() + "` ADD COLUMN `" + col.name + "` " + col.sqlType;
-                        try (Statement s = c.createStatement()) {
-                            s.execute(add);
-                        }
-                    }
-                }
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
-            }
+            EntityPlan<?> plan = plans.get(et);
+            if (plan == null) continue;
+            syncSchema(sourceOf(et), plan, true);
         }
     }
 
     @Override
     public <T, ID> Repository<T, ID> repo(Class<T> entityType) {
-        Binder.BoundTable t = Binder.tableOf(entityType)
-                .orElseThrow(() -> new IllegalArgumentException("@Table missing on " + entityType));
+        @SuppressWarnings("unchecked")
+        Repository<T, ID> existing = (Repository<T, ID>) openRepos.get(entityType);
+        return existing != null ? existing : open(entityType);
+    }
+
+    /** 首次打开仓库：建计划、同步结构；加锁保证并发首次调用只建一个仓库 */
+    private synchronized <T, ID> Repository<T, ID> open(Class<T> entityType) {
         @SuppressWarnings("unchecked")
         Repository<T, ID> existing = (Repository<T, ID>) openRepos.get(entityType);
         if (existing != null) return existing;
+        Binder.BoundTable t = Binder.tableOf(entityType)
+                .orElseThrow(() -> new IllegalArgumentException("@Table missing on " + entityType));
+        DataSourceGroup g = sourceOf(entityType);
         registeredEntities.add(entityType);
         final Repository<T, ID> repo;
-        ensureTable(entityType, t.name());
-        repo = new RepositoryImpl<>(ds, entityType, t.name());
+        EntityPlan<T> plan = EntityPlan.of(entityType, t.name(), codecs, AccessorFactory.METHOD_HANDLES);
+        plans.put(entityType, plan);
+        syncSchema(g, plan, false);
+        repo = new RepositoryImpl<>(contexts.get(g.name), plan);
+        sourcesByTable.put(plan.table, g);
+        plansByTable.put(plan.table, plan);
         openRepos.put(entityType, repo);
+        startMigrations(entityType);
         return repo;
     }
 
-    private <T> void ensureTable(Class<T> type, String table) {
-        List<Col> cols = columns(type);
-        String pk = cols.stream().filter(c -> c.id).map(c -> c.name).findFirst().orElse(null);
-        String colDefs = cols.stream().map(Col::ddl).collect(Collectors.joining(", "));
-        String ddl = "CREATE TABLE IF NOT EXISTS `" + table + "` (" + colDefs + (pk != null ? ", PRIMARY KEY(`" + pk + "`)" : "") + ")";
-        try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
-            s.execute(ddl);
+    /** 实体仓库已打开时启动（或在补注册步骤后重新启动）后台数据迁移 */
+    private void startMigrations(Class<?> entityType) {
+        EntityPlan<?> plan = plans.get(entityType);
+        if (plan == null || !openRepos.containsKey(entityType)) return;
+        migrations.start(sourceOf(entityType).primary(), plan, ids -> {
+            if (openRepos.get(entityType) instanceof RepositoryImpl<?, ?> r) r.migrated(ids);
+        });
+    }
+
+    @Override
+    public void registerIdGenerator(String name, IdGenerator generator) {
+        if (name == null || name.isEmpty() || generator == null) throw new IllegalArgumentException("name/generator");
+        idGenerators.register(name, generator);
+    }
+
+    @Override
+    public void registerMigration(Class<?> entityType, EntityMigration migration) {
+        if (entityType == null || migration == null) throw new IllegalArgumentException("entityType/migration");
+        migrations.register(entityType, migration);
+        startMigrations(entityType);
+    }
+
+    @Override
+    public <T> void registerCodec(Class<T> type, FieldCodec<T> codec) {
+        if (type == null || codec == null) throw new IllegalArgumentException("type/codec");
+        codecs.register(type, codec);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T, ID> AsyncRepository<T, ID> async(Class<T> entityType) {
+        return (AsyncRepository<T, ID>) asyncRepos.computeIfAbsent(entityType,
+                k -> new AsyncRepositoryImpl<>(this.<T, ID>repo(entityType), executor));
+    }
+
+    /**
+     * 主线程 JDBC 检测器；适配层在此登记 tick 线程并选择模式
+     */
+    public BlockingCallGuard guard() {
+        return guard;
+    }
+
+    @Override
+    public <R> R inTransaction(Supplier<R> work) {
+        return transactions.run(work);
+    }
+
+    @Override
+    public <R> CompletableFuture<R> inTransactionAsync(Supplier<R> work) {
+        return executor.submit(() -> transactions.run(work));
+    }
+
+    /**
+     * 建表、补列并补齐旧行版本（columns 为 true 或启用结构指纹时）、补索引。
+     * 启用结构指纹时，指纹未变的实体直接跳过；变了的同步后记录新指纹，本次启动内不再重复。
+     */
+    private void syncSchema(DataSourceGroup g, EntityPlan<?> plan, boolean columns) {
+        SchemaFingerprints fps = schemas.get(g.name);
+        String fp = fps == null ? null : SchemaFingerprints.of(plan, g.dialect());
+        try {
+            if (fps != null && fps.matches(plan.table, fp)) return;
+            long token = guard.enter(plan.createTable);
+            try (Connection c = g.primary().getConnection()) {
+                try (Statement s = c.createStatement()) {
+                    s.execute(plan.createTable);
+                }
+                if (fps != null || columns) {
+                    addMissingColumns(c, plan);
+                    backfillVersions(c, plan);
+                }
+                ensureIndexes(c, plan, g.dialect());
+                if (fps != null) {
+                    fps.record(c, plan.table, fp);
+                    LinLog.info(LinMsg.k("linData.ensureTable"), "table", plan.table);
+                }
+            } finally {
+                guard.exit(token, plan.createTable);
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    // —— 列映射 —— //
-    private record Col(String name, String sqlType, boolean notNull, boolean id, boolean auto) {
-        String ddl() {
-            String base = "`" + name + "` " + sqlType + (notNull ? " NOT NULL" : "");
-            if (id && auto) return base + " AUTO_INCREMENT";
-            return base;
+    /** 对照 getColumns 补上缺失的列 */
+    private static void addMissingColumns(Connection c, EntityPlan<?> plan) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        try (ResultSet rs = c.getMetaData().getColumns(c.getCatalog(), null, plan.table, null)) {
+            while (rs.next()) existing.add(rs.getString("COLUMN_NAME"));
+        }
+        for (EntityPlan.ColumnPlan col : plan.columns) {
+            if (!existing.contains(col.name())) {
+                String add = "ALTER TABLE `" + plan.table + "` ADD COLUMN " + col.quoted() + " " + col.sqlType();
+                try (Statement s = c.createStatement()) {
+                    s.execute(add);
+                }
+            }
+        }
+    }
+
+    /** 版本列为 NULL/0 的旧行（补列前写入或外部写入）补为 1，使“版本 0”只表示未入库的新实体 */
+    private static void backfillVersions(Connection c, EntityPlan<?> plan) throws SQLException {
+        if (plan.versionBackfill == null) return;
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate(plan.versionBackfill);
         }
     }
 
-    private static <T> List<Col> columns(Class<T> type) {
-        boolean implicit = type.isAnnotationPresent(Entity.class);
+    /** 对照 getIndexInfo 补建缺失的 @Index 索引（按名称，忽略大小写） */
+    private void ensureIndexes(Connection c, EntityPlan<?> plan, SqlDialect dialect) throws SQLException {
+        if (plan.indexes.isEmpty()) return;
+        Set<String> existing = new HashSet<>();
+        try (ResultSet rs = c.getMetaData().getIndexInfo(c.getCatalog(), null, plan.table, false, true)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                if (name != null) existing.add(name.toLowerCase(Locale.ROOT));
+            }
+        }
+        for (EntityPlan.IndexPlan ix : plan.indexes) {
+            if (existing.contains(ix.name().toLowerCase(Locale.ROOT))) continue;
+            try (Statement s = c.createStatement()) {
+                s.execute(ix.ddl(plan.table, dialect));
+            }
+        }
+    }
 
-        List<Col> out = new ArrayList<>();
-        for (Field f : type.getDeclaredFields()) {
-            int mod = f.getModifiers();
-            // 跳过 static / Java 关键字 transient 字段
-            if (java.lang.reflect.Modifier.isStatic(mod) || java.lang.reflect.Modifier.isTransient(mod)) continue;
 
-            var id = f.getAnnotation(Id.class);
-            var col = f.getAnnotation(Column.class);
+    /**
+     * 各仓库的运行指标，按表名分组；另有执行器、各数据源（副本与熔断）与降级日志的指标
+     */
+    public Map<String, Map<String, Long>> metrics() {
+        Map<String, Map<String, Long>> out = new LinkedHashMap<>();
+        for (Repository<?, ?> r : openRepos.values()) {
+            if (r instanceof RepositoryImpl<?, ?> impl) out.put(impl.toString(), impl.metrics());
+        }
+        if (executor != null) out.put("executor", Map.of("async.inFlight", (long) executor.inFlight()));
+        for (DataSourceGroup g : sources.values()) {
+            Map<String, Long> d = new LinkedHashMap<>(g.stats());
+            if (g.breaker() != null) d.putAll(g.breaker().stats());
+            if (!d.isEmpty()) out.put("datasource." + g.name, d);
+        }
+        if (journal != null) out.put("degraded", journal.stats());
+        return out;
+    }
 
-            boolean excludedByTransient = f.isAnnotationPresent(Transient.class);
-            boolean include =
-                    (col != null)            // 显式 @Column
-                            || (id != null)             // 主键
-                            || (implicit && !excludedByTransient); // @Entity 默认入库，除非 @Transient
+    // —— 降级模式：探测与日志回放 —— //
 
-            if (!include) continue;
+    private void replayQuietly() {
+        try {
+            journal.sync();
+            // 无业务调用时由这里发起半开探测
+            for (DataSourceGroup g : sources.values()) {
+                if (!g.breaker().closed() && g.breaker().allow()) probe(g);
+            }
+            if (journal.pending()) replayJournal();
+        } catch (Throwable e) {
+            LinLog.warn(LinMsg.k("linData.journalReplayFailed"), "reason", String.valueOf(e.getMessage()));
+        }
+    }
 
-            String name = (col != null && !col.name().isEmpty()) ? col.name() : f.getName();
-            boolean notNull = f.isAnnotationPresent(NotNull.class) || (col != null && !col.nullable());
-            boolean auto = id != null && id.auto();
-            String sql = guessType(f, col);
-            out.add(new Col(name, sql, notNull, id != null, auto));
+    private static void probe(DataSourceGroup g) {
+        try (Connection c = g.primary().getConnection()) {
+            if (c.isValid(2)) g.breaker().success(0L);
+            else g.breaker().failure();
+        } catch (SQLException e) {
+            g.breaker().failure();
+        }
+    }
+
+    /** 一批只含同一数据源、且该数据源熔断关闭的连续记录，以便整批在一个事务内提交 */
+    private Predicate<WriteJournal.Entry> sameSource() {
+        DataSourceGroup[] first = {null};
+        return en -> {
+            DataSourceGroup g = sourcesByTable.get(en.table());
+            if (g == null || !g.breaker().closed()) return false;
+            if (first[0] == null) first[0] = g;
+            return first[0] == g;
+        };
+    }
+
+    /** 按序分批回放到日志为空、遇到尚未打开仓库的表或所在数据库不可达为止 */
+    private void replayJournal() {
+        Set<String> touched = new HashSet<>();
+        long start = System.nanoTime();
+        long total = 0;
+        try {
+            for (int n; (n = journal.replay(cfg.batchSize(), sameSource(), batch -> {
+                DataSourceGroup g = sourcesByTable.get(batch.get(0).table());
+                try {
+                    applyJournal(g, batch);
+                } catch (SQLException e) {
+                    if (CircuitBreaker.unavailable(e)) g.breaker().failure();
+                    throw e;
+                }
+                for (WriteJournal.Entry en : batch) touched.add(en.table());
+            })) > 0; ) {
+                total += n;
+            }
+        } catch (SQLException e) {
+            LinLog.warn(LinMsg.k("linData.journalReplayFailed"), "reason", String.valueOf(e.getMessage()));
+        } finally {
+            if (total > 0) {
+                long ms = Math.max(1L, (System.nanoTime() - start) / 1_000_000L);
+                journal.replayRate(total * 1000L / ms);
+                for (Map.Entry<Class<?>, EntityPlan<?>> en : plans.entrySet()) {
+                    if (touched.contains(en.getValue().table)
+                            && openRepos.get(en.getKey()) instanceof RepositoryImpl<?, ?> r) {
+                        r.replayed();
+                    }
+                }
+                LinLog.info(LinMsg.k("linData.journalReplayed"), "count", total, "ms", ms, "left", journal.depth());
+            }
+        }
+    }
+
+    /** 一批在一个事务内执行；语句错误（非连接问题）时逐条重试，仍失败的记录记日志后跳过 */
+    private void applyJournal(DataSourceGroup g, List<WriteJournal.Entry> batch) throws SQLException {
+        try {
+            applyEntries(g, batch);
+        } catch (SQLException e) {
+            if (CircuitBreaker.unavailable(e)) throw e;
+            for (WriteJournal.Entry en : batch) {
+                try {
+                    applyEntries(g, List.of(en));
+                } catch (SQLException one) {
+                    if (CircuitBreaker.unavailable(one)) throw one;
+                    journal.rejected();
+                    LinLog.warn(LinMsg.k("linData.journalRejected"), "table", en.table(), "reason", String.valueOf(one.getMessage()));
+                }
+            }
+        }
+    }
+
+    /** 相邻同语句的记录合并为一次 executeBatch，保持原有顺序；无 upsert 语句的保存逐条执行 */
+    private void applyEntries(DataSourceGroup g, List<WriteJournal.Entry> batch) throws SQLException {
+        try (Connection c = g.primary().getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            PreparedStatement ps = null;
+            String current = null;
+            try {
+                for (WriteJournal.Entry en : batch) {
+                    String sql = replaySql(g, en);
+                    if (sql == null) {
+                        if (ps != null) {
+                            ps.executeBatch();
+                            ps.close();
+                            ps = null;
+                            current = null;
+                        }
+                        replaySave(c, plansByTable.get(en.table()), en.values());
+                        continue;
+                    }
+                    if (!sql.equals(current)) {
+                        if (ps != null) {
+                            ps.executeBatch();
+                            ps.close();
+                        }
+                        ps = c.prepareStatement(sql);
+                        current = sql;
+                    }
+                    Object[] v = en.values();
+                    for (int i = 0; i < v.length; i++) ps.setObject(i + 1, v[i]);
+                    ps.addBatch();
+                }
+                if (ps != null) ps.executeBatch();
+                c.commit();
+            } catch (SQLException | RuntimeException ex) {
+                c.rollback();
+                throw ex;
+            } finally {
+                if (ps != null) ps.close();
+                c.setAutoCommit(autoCommit);
+            }
         }
-        return out;
     }
 
-    private static String guessType(Field f, Column col) {
-        Class<?> t = f.getType();
-        int len = col == null ? 0 : col.length();
-        if (t == Long.class || t == long.class) return "BIGINT";
-        if (t == Integer.class || t == int.class) return "INT";
-        if (t == Boolean.class || t == boolean.class) return "TINYINT(1)";
-        if (t == Double.class || t == double.class) return "DOUBLE";
-        if (t == Float.class || t == float.class) return "FLOAT";
-        if (t == java.time.Instant.class) return "TIMESTAMP";
-        if (t == String.class) {
-            if (len > 0 && len <= 1024) return "VARCHAR(" + len + ")";
-            return "TEXT";
+    /** 保存记录的值按 plan.columns 顺序：先按 ID 更新，未命中再带 ID 插入 */
+    private static void replaySave(Connection c, EntityPlan<?> plan, Object[] values) throws SQLException {
+        Object id = values[plan.id.ordinal() - 1];
+        if (plan.update != null) {
+            try (PreparedStatement ps = c.prepareStatement(plan.update)) {
+                int i = 1;
+                for (EntityPlan.ColumnPlan col : plan.updatable) ps.setObject(i++, values[col.ordinal() - 1]);
+                ps.setObject(i, id);
+                if (ps.executeUpdate() > 0) return;
+            }
+        } else {
+            try (PreparedStatement ps = c.prepareStatement(plan.existsById)) {
+                ps.setObject(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) return;
+                }
+            }
+        }
+        try (PreparedStatement ps = c.prepareStatement(plan.insertAll)) {
+            for (int i = 0; i < values.length; i++) ps.setObject(i + 1, values[i]);
+            ps.executeUpdate();
         }
-        return "TEXT"; // 简化：复杂类型由调用方自行序列化为 JSON 字符串
     }
 
+    /** SAVE 记录在表没有 upsert 语句（MySQL 表另有唯一索引）时返回 null，由 {@link #replaySave} 执行 */
+    private String replaySql(DataSourceGroup g, WriteJournal.Entry en) {
+        EntityPlan<?> plan = plansByTable.get(en.table());
+        return switch (en.op()) {
+            case WriteJournal.SAVE -> replayUpserts.computeIfAbsent(plan.table, t -> g.dialect().upsert(plan));
+            case WriteJournal.INSERT -> plan.insert;
+            case WriteJournal.DELETE -> plan.deleteById;
+            case WriteJournal.DELETE_ALL -> plan.deleteAll;
+            default -> throw new IllegalStateException("Unknown journal op " + en.op());
+        };
+    }
 
     @Override
     public void flushAll() {
@@ -200,6 +537,8 @@ public final class DataServiceImpl implements DataService {
 
     @Override
     public void close() {
+        // 先等异步仓库上已提交的任务跑完，它们的写入才赶得上随后的落盘
+        if (executor != null) executor.close();
         flushAll();
         try { LinLog.info(LinMsg.k("linData.flushOk"), "data", "close()"); } catch (Throwable ignore) {}
         for (Repository<?, ?> r : openRepos.values()) {
@@ -209,5 +548,35 @@ public final class DataServiceImpl implements DataService {
             }
         }
         openRepos.clear();
+        asyncRepos.clear();
+        if (guard.mode() != BlockingCallGuard.Mode.OFF) guard.logSummary();
+        // 回填停在当前块，下次启动从断点继续
+        migrations.close();
+        // 等正在执行的落盘、回放任务结束，再关闭它们会写的日志
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, java.util.concurrent.TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 未回放的记录留在磁盘，下次启动后继续
+        if (journal != null) journal.close();
+        if (backups != null) {
+            backups.shutdownNow();
+            try {
+                backups.awaitTermination(30, java.util.concurrent.TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (main != null && h2 != null && h2.local() && cfg.compactOnClose()) {
+            try {
+                h2.compact(main.primary());
+            } catch (Throwable e) {
+                LinLog.warn(LinMsg.k("linData.compactFailed"), "reason", String.valueOf(e.getMessage()));
+            }
+        }
+        for (DataSourceGroup g : sources.values()) g.close();
+        sources.clear();
     }
 }
\ No newline at end of file
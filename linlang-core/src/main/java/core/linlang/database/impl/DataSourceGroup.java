@@ -0,0 +1,181 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.config.DbConfig;
+import api.linlang.file.database.types.DbType;
+import api.linlang.file.database.types.ReplicaSelection;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个数据源：主库连接池、可选的只读副本与各自的方言/熔断器。
+ * <p>
+ * 写入与事务单元只用主库；{@link #pick()} 为单元外的查询选一个副本，
+ * 没有可用副本时返回 null，由调用方回落主库。连不上的副本暂停 breakerOpenMillis 后再参与选择。
+ */
+final class DataSourceGroup {
+
+    /** 按最低延迟选择时，每隔这么多次改为轮询一次，让较慢的副本也有机会刷新延迟 */
+    private static final int EXPLORE = 16;
+
+    final String name;
+    private final HikariDataSource primary;
+    private final SqlDialect dialect;
+    private final CircuitBreaker breaker;
+    private final List<Replica> replicas;
+    private final ReplicaSelection selection;
+    private final long retryNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+
+    /** own 提供账号、连接池大小与副本；超时等其余选项取自根配置 root */
+    DataSourceGroup(String name, DbType type, String url, DbConfig own, DbConfig root, CircuitBreaker breaker) {
+        this.name = name;
+        long timeout = root.connectionTimeoutMillis();
+        this.primary = pool(type, url, own.user(), own.pass(), own.poolSize(), timeout);
+        this.dialect = SqlDialect.detect(type, primary);
+        this.breaker = breaker;
+        this.replicas = own.replicas().stream()
+                .map(r -> new Replica(r.url(), pool(typeOf(r.url(), type), r.url(), r.user(), r.pass(),
+                        own.poolSize(), timeout)))
+                .toList();
+        this.selection = own.replicaSelection();
+        this.retryNanos = root.breakerOpenMillis() * 1_000_000L;
+    }
+
+    /** 按 URL 前缀判断类型，无法判断时用 fallback */
+    static DbType typeOf(String url, DbType fallback) {
+        String u = url == null ? "" : url.toLowerCase(Locale.ROOT);
+        if (u.startsWith("jdbc:h2:")) return DbType.H2;
+        if (u.startsWith("jdbc:mysql:")) return DbType.MYSQL;
+        return fallback;
+    }
+
+    static HikariDataSource pool(DbType type, String url, String user, String pass, int poolSize, long timeoutMillis) {
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl(url);
+        hc.setUsername(user);
+        hc.setPassword(pass);
+        hc.setDriverClassName(type == DbType.H2 ? "org.h2.Driver" : "com.mysql.cj.jdbc.Driver");
+        hc.setMaximumPoolSize(Math.max(4, poolSize));
+        hc.setMinimumIdle(Math.min(2, poolSize));
+        hc.setConnectionTimeout(timeoutMillis);
+        if (type == DbType.MYSQL) {
+            // 让 executeBatch 合并为多值 INSERT，一批一次往返
+            hc.addDataSourceProperty("rewriteBatchedStatements", "true");
+            // 同形状查询共用 SQL 文本，客户端预编译缓存按文本命中
+            hc.addDataSourceProperty("cachePrepStmts", "true");
+            hc.addDataSourceProperty("prepStmtCacheSize", "256");
+            hc.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        }
+        return new HikariDataSource(hc);
+    }
+
+    HikariDataSource primary() {
+        return primary;
+    }
+
+    SqlDialect dialect() {
+        return dialect;
+    }
+
+    /** 降级模式下非 null */
+    CircuitBreaker breaker() {
+        return breaker;
+    }
+
+    boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /** 为一次查询选副本；全部暂停时返回 null（回落主库） */
+    Replica pick() {
+        int n = replicas.size();
+        if (n == 0) return null;
+        long now = System.nanoTime();
+        int ticket = next.getAndIncrement();
+        int start = Math.floorMod(ticket, n);
+        if (selection == ReplicaSelection.LEAST_LATENCY && ticket % EXPLORE != 0) {
+            Replica best = null;
+            for (Replica r : replicas) {
+                if (!r.up(now)) continue;
+                if (best == null || r.ewmaNanos < best.ewmaNanos) best = r;
+            }
+            if (best != null) return best;
+        }
+        for (int i = 0; i < n; i++) {
+            Replica r = replicas.get((start + i) % n);
+            if (r.up(now)) return r;
+        }
+        primaryReads.increment();
+        return null;
+    }
+
+    /** 副本连不上：暂停一段时间，期间的查询分给其他副本或主库 */
+    void down(Replica r) {
+        r.failures.increment();
+        r.downUntil = System.nanoTime() + retryNanos;
+    }
+
+    /** 无副本时为空 */
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        if (replicas.isEmpty()) return m;
+        m.put("replica.fallbackReads", primaryReads.sum());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica r = replicas.get(i);
+            m.put("replica." + i + ".reads", r.reads.sum());
+            m.put("replica." + i + ".failures", r.failures.sum());
+            m.put("replica." + i + ".latencyMicros", r.ewmaNanos / 1000L);
+        }
+        return m;
+    }
+
+    void close() {
+        for (Replica r : replicas) r.ds.close();
+        primary.close();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /** 只读副本与其近期延迟（指数滑动平均，权重 1/8） */
+    static final class Replica {
+        final String url;
+        private final HikariDataSource ds;
+        private volatile long ewmaNanos;
+        private volatile long downUntil;
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        Replica(String url, HikariDataSource ds) {
+            this.url = url;
+            this.ds = ds;
+        }
+
+        DataSource ds() {
+            return ds;
+        }
+
+        private boolean up(long now) {
+            long d = downUntil;
+            return d == 0L || now - d >= 0L;
+        }
+
+        /** 记录一次查询耗时；并发下偶有丢失的更新无碍平均值 */
+        void observe(long nanos) {
+            reads.increment();
+            long prev = ewmaNanos;
+            ewmaNanos = prev == 0L ? Math.max(1L, nanos) : prev + (nanos - prev) / 8;
+        }
+    }
+}
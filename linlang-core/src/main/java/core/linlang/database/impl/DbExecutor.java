@@ -0,0 +1,93 @@
+package core.linlang.database.impl;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 数据库专用执行器。
+ * <p>
+ * 运行时支持虚拟线程（Java 21+）时，每个任务一个虚拟线程；否则使用固定大小的平台线程池。
+ * 两种模式都以 queueDepth 限制排队与执行中的任务总数，超出时立即拒绝，避免任务无限堆积。
+ */
+final class DbExecutor implements Executor, AutoCloseable {
+
+    private final ExecutorService delegate;
+    private final Semaphore slots;
+    private final int capacity;
+    private final boolean virtual;
+
+    DbExecutor(int threads, int queueDepth) {
+        this.capacity = Math.max(1, queueDepth);
+        this.slots = new Semaphore(capacity);
+        ExecutorService v = tryVirtual();
+        this.virtual = v != null;
+        if (v != null) {
+            this.delegate = v;
+        } else {
+            AtomicInteger seq = new AtomicInteger();
+            int n = Math.max(1, threads);
+            this.delegate = new ThreadPoolExecutor(n, n, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "linlang-db-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!slots.tryAcquire()) {
+            throw new RejectedExecutionException("linlang db executor saturated");
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /** 在本执行器上运行，拒绝时返回异常完成的 future 而非直接抛出 */
+    <R> CompletableFuture<R> submit(Supplier<R> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, this);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** 当前排队与执行中的任务数 */
+    int inFlight() {
+        return capacity - slots.availablePermits();
+    }
+
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void close() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(10, TimeUnit.SECONDS)) delegate.shutdownNow();
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService tryVirtual() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
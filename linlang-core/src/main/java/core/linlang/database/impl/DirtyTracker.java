@@ -0,0 +1,135 @@
+package core.linlang.database.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 ID 的列值快照与变更掩码。
+ * <p>
+ * 快照保存可更新列（非 ID、非计数列）转换后的数据库值；{@link #diff} 以位掩码给出变化的列，
+ * 对应的 {@code UPDATE ... SET} 按掩码缓存。可更新列超过 64 个时始终整行更新。
+ */
+final class DirtyTracker<T> {
+
+    /** 无快照或无法按列比较，需整行更新 */
+    static final long FULL = -1L;
+
+    private final EntityPlan<T> plan;
+    private final List<EntityPlan.ColumnPlan> cols;
+    private final int maxSnapshots;
+    private final boolean maskable;
+    private final Map<Object, Object[]> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, String> updates = new ConcurrentHashMap<>();
+
+    private final LongAdder full = new LongAdder();
+    private final LongAdder partial = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder columnsSkipped = new LongAdder();
+
+    DirtyTracker(EntityPlan<T> plan, int maxSnapshots) {
+        this.plan = plan;
+        this.cols = plan.updatable;
+        this.maxSnapshots = Math.max(1, maxSnapshots);
+        this.maskable = cols.size() <= 64;
+    }
+
+    /** 记录实体当前的列值；无 ID 或快照已满时忽略 */
+    void capture(T e) {
+        Object id = plan.id.access().get(e);
+        if (id == null) return;
+        if (snapshots.size() >= maxSnapshots && !snapshots.containsKey(id)) return;
+        snapshots.put(id, values(e));
+    }
+
+    void forget(Object id) {
+        if (id != null) snapshots.remove(id);
+    }
+
+    void clear() {
+        snapshots.clear();
+    }
+
+    /** 是否持有该实体的快照（即已知数据库中存在该行） */
+    boolean tracked(T e) {
+        return snapshots.containsKey(plan.id.access().get(e));
+    }
+
+    /**
+     * 与快照比较。
+     * @return 变化列的位掩码（按 updatable 顺序）；0 表示无变化；{@link #FULL} 表示需整行更新
+     */
+    long diff(T e) {
+        Object[] before = maskable ? snapshots.get(plan.id.access().get(e)) : null;
+        if (before == null) {
+            full.increment();
+            return FULL;
+        }
+        long mask = 0L;
+        for (int i = 0; i < cols.size(); i++) {
+            EntityPlan.ColumnPlan col = cols.get(i);
+            // 二进制编码的列为 byte[]，按内容比较
+            if (!Objects.deepEquals(before[i], col.converter().toDb(col.access().get(e)))) mask |= 1L << i;
+        }
+        int changed = Long.bitCount(mask);
+        columnsSkipped.add(cols.size() - changed);
+        if (mask == 0L) skipped.increment();
+        else partial.increment();
+        return mask;
+    }
+
+    /** 只含掩码列的 UPDATE，按掩码缓存 */
+    String updateSql(long mask) {
+        if (mask == FULL) return plan.update;
+        return updates.computeIfAbsent(mask, m -> {
+            StringBuilder sets = new StringBuilder();
+            for (int i = 0; i < cols.size(); i++) {
+                if ((m & (1L << i)) == 0) continue;
+                if (sets.length() > 0) sets.append(',');
+                sets.append(cols.get(i).quoted()).append("=?");
+            }
+            return "UPDATE `" + plan.table + "` SET " + sets + " WHERE " + plan.id.quoted() + "=?" + plan.versionCheck;
+        });
+    }
+
+    /** 版本列在掩码中的位；无版本列或整行更新模式时为 0 */
+    long versionBit() {
+        int i = plan.version == null ? -1 : cols.indexOf(plan.version);
+        return i < 0 || !maskable ? 0L : 1L << i;
+    }
+
+    /** 按掩码绑定 SET 部分，返回下一个参数序号 */
+    int bind(PreparedStatement ps, T e, long mask) throws SQLException {
+        int idx = 1;
+        for (int i = 0; i < cols.size(); i++) {
+            if (mask == FULL || (mask & (1L << i)) != 0) cols.get(i).access().bind(ps, idx++, e);
+        }
+        return idx;
+    }
+
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("dirty.snapshots", (long) snapshots.size());
+        m.put("dirty.fullUpdates", full.sum());
+        m.put("dirty.partialUpdates", partial.sum());
+        m.put("dirty.skippedUpdates", skipped.sum());
+        m.put("dirty.columnsSkipped", columnsSkipped.sum());
+        return m;
+    }
+
+    private Object[] values(T e) {
+        Object[] v = new Object[cols.size()];
+        for (int i = 0; i < v.length; i++) {
+            EntityPlan.ColumnPlan col = cols.get(i);
+            Object db = col.converter().toDb(col.access().get(e));
+            // byte[] 字段可能被原地修改，快照须持有副本，否则改动后与快照仍相等
+            v[i] = db instanceof byte[] b ? b.clone() : db;
+        }
+        return v;
+    }
+}
@@ -0,0 +1,168 @@
+package core.linlang.database.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 实体物化器：从结果集行构造实体，并在需要时生成“替换某列后”的新实例。
+ * <ul>
+ *   <li>{@link Setters}：无参构造 + 逐列写字段，适用于普通实体；final 字段经反射写入；</li>
+ *   <li>{@link Constructing}：调用 record 规范构造器或与列顺序一致的全参构造器，适用于 record 及没有无参构造器的不可变实体。</li>
+ * </ul>
+ */
+abstract class EntityAccessor<T> {
+
+    /** 由结果集当前行构造实体 */
+    abstract T read(ResultSet rs) throws SQLException;
+
+    /** 将某列设为 value 并返回实体；不可变实体返回新实例 */
+    abstract T with(T entity, EntityPlan.ColumnPlan col, Object value);
+
+    /** 是否可原地修改 */
+    abstract boolean mutable();
+
+    static <T> EntityAccessor<T> of(Class<T> type, List<EntityPlan.ColumnPlan> cols) {
+        boolean allWritable = cols.stream().allMatch(c -> c.access().writable());
+        if (!type.isRecord() && allWritable) {
+            try {
+                Constructor<T> noArg = type.getDeclaredConstructor();
+                return new Setters<>(type, noArg, cols);
+            } catch (NoSuchMethodException ignore) {
+                // 回落到构造器物化
+            }
+        }
+        return Constructing.of(type, cols);
+    }
+
+    // —— 无参构造 + 写字段 —— //
+
+    static final class Setters<T> extends EntityAccessor<T> {
+        private final MethodHandle ctor;   // ()Object
+        private final ColumnAccessor[] cols;
+
+        Setters(Class<T> type, Constructor<T> noArg, List<EntityPlan.ColumnPlan> cols) {
+            try {
+                noArg.setAccessible(true);
+                this.ctor = MethodHandles.lookup().unreflectConstructor(noArg)
+                        .asType(MethodType.methodType(Object.class));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access no-arg constructor of " + type, e);
+            }
+            this.cols = cols.stream().map(EntityPlan.ColumnPlan::access).toArray(ColumnAccessor[]::new);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        T read(ResultSet rs) throws SQLException {
+            Object obj;
+            try { obj = (Object) ctor.invokeExact(); } catch (Throwable t) { throw ColumnAccessor.rethrow(t); }
+            for (ColumnAccessor c : cols) c.readInto(rs, obj);
+            return (T) obj;
+        }
+
+        @Override
+        T with(T entity, EntityPlan.ColumnPlan col, Object value) {
+            col.access().set(entity, value);
+            return entity;
+        }
+
+        @Override boolean mutable() { return true; }
+    }
+
+    // —— 构造器物化 —— //
+
+    static final class Constructing<T> extends EntityAccessor<T> {
+        private final MethodHandle ctor;        // (Object[])Object
+        private final ColumnAccessor[] cols;
+        private final int[] argOf;              // 列 → 构造参数下标
+        private final Object[] defaults;        // 非持久化参数的默认值
+
+        private Constructing(MethodHandle ctor, ColumnAccessor[] cols, int[] argOf, Object[] defaults) {
+            this.ctor = ctor;
+            this.cols = cols;
+            this.argOf = argOf;
+            this.defaults = defaults;
+        }
+
+        static <T> Constructing<T> of(Class<T> type, List<EntityPlan.ColumnPlan> cols) {
+            ColumnAccessor[] access = cols.stream().map(EntityPlan.ColumnPlan::access).toArray(ColumnAccessor[]::new);
+            int[] argOf = new int[cols.size()];
+            Constructor<?> target;
+            Class<?>[] params;
+            try {
+                if (type.isRecord()) {
+                    // 规范构造器：按组件顺序；列按字段名匹配组件
+                    RecordComponent[] rc = type.getRecordComponents();
+                    params = Arrays.stream(rc).map(RecordComponent::getType).toArray(Class<?>[]::new);
+                    target = type.getDeclaredConstructor(params);
+                    for (int i = 0; i < cols.size(); i++) {
+                        argOf[i] = -1;
+                        for (int j = 0; j < rc.length; j++) {
+                            if (rc[j].getName().equals(cols.get(i).field().getName())) { argOf[i] = j; break; }
+                        }
+                        if (argOf[i] < 0) throw new IllegalStateException("No record component for " + cols.get(i).field());
+                    }
+                } else {
+                    // 全参构造器：参数类型与持久化字段声明顺序一致
+                    params = cols.stream().map(c -> c.field().getType()).toArray(Class<?>[]::new);
+                    target = type.getDeclaredConstructor(params);
+                    for (int i = 0; i < argOf.length; i++) argOf[i] = i;
+                }
+                target.setAccessible(true);
+                MethodHandle mh = MethodHandles.lookup().unreflectConstructor(target)
+                        .asType(MethodType.methodType(Object.class, params))
+                        .asSpreader(Object[].class, params.length);
+                Object[] defaults = new Object[params.length];
+                for (int j = 0; j < params.length; j++) defaults[j] = defaultOf(params[j]);
+                return new Constructing<>(mh, access, argOf, defaults);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalStateException("Entity " + type.getName()
+                        + " needs a no-arg constructor, a record canonical constructor,"
+                        + " or a constructor matching its persistent fields in declaration order", e);
+            }
+        }
+
+        @Override
+        T read(ResultSet rs) throws SQLException {
+            Object[] args = defaults.clone();
+            for (int i = 0; i < cols.length; i++) args[argOf[i]] = cols[i].readValue(rs);
+            return construct(args);
+        }
+
+        @Override
+        T with(T entity, EntityPlan.ColumnPlan col, Object value) {
+            Object[] args = defaults.clone();
+            for (int i = 0; i < cols.length; i++) {
+                args[argOf[i]] = cols[i] == col.access() ? value : cols[i].get(entity);
+            }
+            return construct(args);
+        }
+
+        @Override boolean mutable() { return false; }
+
+        @SuppressWarnings("unchecked")
+        private T construct(Object[] args) {
+            for (int j = 0; j < args.length; j++) if (args[j] == null && defaults[j] != null) args[j] = defaults[j];
+            try { return (T) (Object) ctor.invoke(args); } catch (Throwable t) { throw ColumnAccessor.rethrow(t); }
+        }
+
+        private static Object defaultOf(Class<?> t) {
+            if (!t.isPrimitive()) return null;
+            if (t == boolean.class) return false;
+            if (t == char.class) return '\0';
+            if (t == long.class) return 0L;
+            if (t == double.class) return 0d;
+            if (t == float.class) return 0f;
+            if (t == byte.class) return (byte) 0;
+            if (t == short.class) return (short) 0;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Cached;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 ID 的有界实体缓存。
+ * <p>
+ * 读路径无锁：命中只写入条目的 volatile 访问标记与时间戳；淘汰在写路径上以 CLOCK（近似 LRU）
+ * 选出候选，{@link Cached.Eviction#TINY_LFU} 时再以 Count-Min 频率草图比较新旧条目决定是否接纳。
+ * <p>
+ * 读穿透回填与写入竞争：写入、失效与清空按 ID 分段推进写戳，读取方在查库前取戳（{@link #stamp}），
+ * 回填（{@link #fill}）时在该键的原子更新内核对，戳已变化说明期间有写入，放弃回填，旧行不会覆盖新值。
+ */
+final class EntityCache<T> {
+
+    /** 写戳分段数 */
+    private static final int STRIPES = 256;
+
+    private static final class Entry<T> {
+        final Object key;
+        final T value;                 // null 表示缓存的“不存在”
+        final long writtenAt;
+        volatile long accessedAt;
+        volatile boolean referenced;
+
+        Entry(Object key, T value, long now) {
+            this.key = key;
+            this.value = value;
+            this.writtenAt = now;
+            this.accessedAt = now;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long idleNanos;
+    private final boolean cacheMisses;
+    private final FrequencySketch sketch;   // 仅 TINY_LFU
+
+    private final ConcurrentHashMap<Object, Entry<T>> map = new ConcurrentHashMap<>();
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+    private final AtomicLong generation = new AtomicLong();   // clear 时推进
+    private final ConcurrentLinkedQueue<Entry<T>> clock = new ConcurrentLinkedQueue<>();
+    private final Object evictLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    EntityCache(Cached spec) {
+        this.maxSize = Math.max(1, spec.maxSize());
+        this.ttlNanos = spec.ttlSeconds() * 1_000_000_000L;
+        this.idleNanos = spec.idleSeconds() * 1_000_000_000L;
+        this.cacheMisses = spec.cacheMisses();
+        this.sketch = spec.eviction() == Cached.Eviction.TINY_LFU ? new FrequencySketch(maxSize) : null;
+    }
+
+    /**
+     * 查询缓存。
+     * @return null 表示未缓存；{@code Optional.empty()} 表示已缓存的“不存在”
+     */
+    Optional<T> get(Object id) {
+        if (sketch != null) sketch.increment(id);
+        Entry<T> e = map.get(id);
+        long now = System.nanoTime();
+        if (e == null || expired(e, now)) {
+            if (e != null) map.remove(id, e);
+            misses.increment();
+            return null;
+        }
+        e.accessedAt = now;
+        if (!e.referenced) e.referenced = true;
+        hits.increment();
+        return Optional.ofNullable(e.value);
+    }
+
+    /** 写入后放入最新值 */
+    void put(Object id, T value) {
+        if (id == null) return;
+        stamps.incrementAndGet(stripe(id));
+        insert(new Entry<>(id, value, System.nanoTime()), -1L);
+    }
+
+    /** 读穿透前取得该 ID 的写戳，回填时原样传给 {@link #fill} / {@link #fillMiss} */
+    long stamp(Object id) {
+        return generation.get() + stamps.get(stripe(id));
+    }
+
+    /** 读穿透回填；取戳之后该 ID 有过写入或失效时放弃 */
+    void fill(Object id, T value, long stamp) {
+        if (id != null) insert(new Entry<>(id, value, System.nanoTime()), stamp);
+    }
+
+    /** 回填“不存在”，未开启 cacheMisses 时忽略 */
+    void fillMiss(Object id, long stamp) {
+        if (cacheMisses && id != null) insert(new Entry<>(id, null, System.nanoTime()), stamp);
+    }
+
+    void invalidate(Object id) {
+        if (id == null) return;
+        stamps.incrementAndGet(stripe(id));
+        map.remove(id);
+    }
+
+    void clear() {
+        generation.incrementAndGet();
+        synchronized (evictLock) {
+            map.clear();
+            clock.clear();
+        }
+    }
+
+    /** 计数器快照 */
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("cache.size", (long) map.size());
+        m.put("cache.hits", hits.sum());
+        m.put("cache.misses", misses.sum());
+        m.put("cache.evictions", evictions.sum());
+        return m;
+    }
+
+    // —— 内部 —— //
+
+    private boolean expired(Entry<T> e, long now) {
+        return (ttlNanos > 0 && now - e.writtenAt > ttlNanos)
+                || (idleNanos > 0 && now - e.accessedAt > idleNanos);
+    }
+
+    private static int stripe(Object id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    /** expected 为 -1 时无条件放入，否则仅当写戳仍等于 expected */
+    private void insert(Entry<T> e, long expected) {
+        if (expected < 0) {
+            map.put(e.key, e);
+        } else {
+            // 核对与放入在同一键的原子更新内，与并发的 put/invalidate 串行
+            boolean[] added = {false};
+            map.compute(e.key, (k, cur) -> {
+                if (stamp(k) != expected) return cur;
+                added[0] = true;
+                return e;
+            });
+            if (!added[0]) return;
+        }
+        clock.add(e);
+        if (map.size() > maxSize || clock.size() > maxSize * 2) evict(e);
+    }
+
+    private void evict(Entry<T> candidate) {
+        synchronized (evictLock) {
+            long now = System.nanoTime();
+            int budget = clock.size() * 2;
+            while (map.size() > maxSize && budget-- > 0) {
+                Entry<T> head = clock.poll();
+                if (head == null) break;
+                if (map.get(head.key) != head) continue;        // 已被替换或移除
+                if (head == candidate && clock.size() > 0) {     // 不以新条目自身作为首选淘汰者
+                    clock.add(head);
+                    continue;
+                }
+                if (!expired(head, now) && head.referenced) {    // 二次机会
+                    head.referenced = false;
+                    clock.add(head);
+                    continue;
+                }
+                if (sketch != null && head != candidate && !expired(head, now)
+                        && sketch.frequency(candidate.key) <= sketch.frequency(head.key)) {
+                    // TinyLFU 拒绝接纳：保留旧条目，淘汰新条目
+                    clock.add(head);
+                    if (map.remove(candidate.key, candidate)) evictions.increment();
+                    continue;
+                }
+                if (map.remove(head.key, head)) evictions.increment();
+            }
+            // 清理队列中失效的引用，防止无限增长
+            if (clock.size() > maxSize * 2) clock.removeIf(x -> map.get(x.key) != x);
+        }
+    }
+
+    /** 4 行 Count-Min 频率草图，计数满 15 饱和，总增量达到阈值后整体减半（老化）。 */
+    static final class FrequencySketch {
+        private final AtomicIntegerArray table;
+        private final int mask;
+        private final int resetAt;
+        private final LongAdder additions = new LongAdder();
+
+        FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, maxSize) * 2 - 1) << 1;
+            this.table = new AtomicIntegerArray(width * 4);
+            this.mask = width - 1;
+            this.resetAt = width * 10;
+        }
+
+        void increment(Object key) {
+            int h = spread(key.hashCode());
+            for (int row = 0; row < 4; row++) {
+                int i = index(h, row);
+                int v = table.get(i);
+                if (v < 15) table.compareAndSet(i, v, v + 1);
+            }
+            additions.increment();
+            if (additions.sum() >= resetAt) age();
+        }
+
+        int frequency(Object key) {
+            int h = spread(key.hashCode());
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < 4; row++) min = Math.min(min, table.get(index(h, row)));
+            return min;
+        }
+
+        private synchronized void age() {
+            if (additions.sum() < resetAt) return;
+            for (int i = 0; i < table.length(); i++) table.set(i, table.get(i) >>> 1);
+            additions.reset();
+        }
+
+        private int index(int h, int row) {
+            int x = h * (0x9E3779B9 + row * 0x7F4A7C15);
+            return row * (mask + 1) + ((x ^ (x >>> 16)) & mask);
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 16;
+            h *= 0x45D9F3B;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package core.linlang.database.impl;
+
+import api.linlang.audit.LinLog;
+import api.linlang.file.database.annotations.EntityVersion;
+import api.linlang.file.database.migration.EntityMigration;
+import core.linlang.audit.message.LinMsg;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * {@link EntityVersion} 实体的数据迁移：注册表与后台回填。
+ * <p>
+ * 每个实体按主键键集分块（{@code WHERE id > last ORDER BY id LIMIT n FOR UPDATE}），
+ * 每块在一个短事务内读出、改写并把进度写入 {@code linlang_migration}，块之间暂停以让出数据库，
+ * 只锁住当前块的行。中断或重启后从记录的最后一个主键继续。各实体在同一后台线程上依次执行。
+ * 每块提交后把改写过的主键交给回调，仓库据此作废这些行的缓存、脏跟踪快照与常驻行。
+ */
+final class EntityMigrations {
+
+    static final String TABLE = "linlang_migration";
+
+    private static final String CREATE = "CREATE TABLE IF NOT EXISTS `" + TABLE + "` ("
+            + "`table_name` VARCHAR(128) NOT NULL PRIMARY KEY, "
+            + "`version` INT NOT NULL, "
+            + "`last_key` VARCHAR(255), "
+            + "`rows_done` BIGINT NOT NULL, "
+            + "`updated_at` TIMESTAMP NOT NULL)";
+    private static final String SELECT = "SELECT `version`, `last_key`, `rows_done` FROM `" + TABLE + "` WHERE `table_name`=?";
+    private static final String UPDATE = "UPDATE `" + TABLE + "` SET `version`=?, `last_key`=?, `rows_done`=?, `updated_at`=?"
+            + " WHERE `table_name`=?";
+    private static final String INSERT = "INSERT INTO `" + TABLE + "` (`version`, `last_key`, `rows_done`, `updated_at`, `table_name`)"
+            + " VALUES (?,?,?,?,?)";
+
+    /** 断点：已完成的版本，以及下一步已处理到的主键与行数 */
+    private record Checkpoint(int version, String lastKey, long rows) {}
+
+    private final BlockingCallGuard guard;
+    private final Map<Class<?>, List<EntityMigration>> steps = new ConcurrentHashMap<>();
+    private volatile int chunk = 500;
+    private volatile long pauseMillis = 50L;
+    private ExecutorService worker;      // 首个待迁移实体出现时创建
+    private volatile boolean closed;
+
+    EntityMigrations(BlockingCallGuard guard) {
+        this.guard = guard;
+    }
+
+    /** 每块行数与块间暂停，由 DbConfig 设定 */
+    void throttle(int chunk, long pauseMillis) {
+        this.chunk = Math.max(1, chunk);
+        this.pauseMillis = Math.max(0L, pauseMillis);
+    }
+
+    void register(Class<?> type, EntityMigration m) {
+        if (m.to() <= m.from()) throw new IllegalArgumentException("Migration must move forward: " + m.from() + " -> " + m.to());
+        steps.computeIfAbsent(type, k -> new CopyOnWriteArrayList<>()).add(m);
+    }
+
+    /**
+     * 实体带 {@link EntityVersion} 时交给后台线程比对版本并执行待迁移的步骤；
+     * 每块提交后以该块改写过的主键（实体 ID 类型）调用 changed。
+     */
+    synchronized void start(DataSource ds, EntityPlan<?> plan, Consumer<List<Object>> changed) {
+        EntityVersion ev = plan.type.getAnnotation(EntityVersion.class);
+        if (ev == null || closed) return;
+        if (plan.id == null) throw new IllegalStateException("@EntityVersion needs an @Id on " + plan.type.getName());
+        if (worker == null) {
+            worker = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "linlang-db-migrate");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        worker.execute(() -> run(ds, plan, ev.value(), changed));
+    }
+
+    /** 停止回填；当前块回滚或已提交，进度保留到下次启动 */
+    synchronized void close() {
+        closed = true;
+        if (worker == null) return;
+        worker.shutdownNow();
+        try {
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(DataSource ds, EntityPlan<?> plan, int target, Consumer<List<Object>> changed) {
+        try {
+            Checkpoint cp = load(ds, plan.table);
+            if (cp.version() >= target) return;
+            List<EntityMigration> pending = chain(plan, cp.version(), target);
+            if (pending == null) return;
+            Backfill b = new Backfill(plan);
+            int version = cp.version();
+            for (EntityMigration m : pending) {
+                boolean resume = m.from() == cp.version();
+                Object last = resume ? b.key(cp.lastKey()) : null;
+                long rows = resume ? cp.rows() : 0L;
+                long start = System.nanoTime();
+                while (true) {
+                    if (closed || Thread.currentThread().isInterrupted()) return;
+                    Backfill.Result r = b.step(ds, m, version, last, rows);
+                    rows += r.keys().size();
+                    if (!r.keys().isEmpty()) changed.accept(r.keys());
+                    if (r.last() == null) break;
+                    last = r.last();
+                    if (pauseMillis > 0) Thread.sleep(pauseMillis);
+                }
+                version = m.to();
+                save(ds, plan.table, version, null, 0L);
+                LinLog.info(LinMsg.k("linData.migrationStep"), "table", plan.table, "from", m.from(), "to", m.to(),
+                        "rows", rows, "ms", (System.nanoTime() - start) / 1_000_000L);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            LinLog.warn(LinMsg.k("linData.migrationFailed"), "table", plan.table, "reason", String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * 从 from 到 to 首尾相接的步骤链；同一起点有多个步骤时取跨度最大且不越过 to 的一个。
+     * 链不完整（尚未注册或有缺口）时记日志并返回 null，断点保持不变，补注册后再次启动即可继续。
+     */
+    private List<EntityMigration> chain(EntityPlan<?> plan, int from, int to) {
+        List<EntityMigration> registered = steps.getOrDefault(plan.type, List.of());
+        List<EntityMigration> out = new ArrayList<>();
+        for (int v = from; v < to; ) {
+            int at = v;
+            EntityMigration step = registered.stream()
+                    .filter(m -> m.from() == at && m.to() <= to)
+                    .max(Comparator.comparingInt(EntityMigration::to))
+                    .orElse(null);
+            if (step == null) {
+                LinLog.warn(LinMsg.k("linData.migrationIncomplete"), "table", plan.table, "from", at, "to", to);
+                return null;
+            }
+            out.add(step);
+            v = step.to();
+        }
+        return out;
+    }
+
+    private Checkpoint load(DataSource ds, String table) throws SQLException {
+        long token = guard.enter(SELECT);
+        try (Connection c = ds.getConnection()) {
+            try (Statement s = c.createStatement()) {
+                s.execute(CREATE);
+            }
+            try (PreparedStatement ps = c.prepareStatement(SELECT)) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? new Checkpoint(rs.getInt(1), rs.getString(2), rs.getLong(3)) : new Checkpoint(0, null, 0L);
+                }
+            }
+        } finally {
+            guard.exit(token, SELECT);
+        }
+    }
+
+    private void save(DataSource ds, String table, int version, String lastKey, long rows) throws SQLException {
+        long token = guard.enter(UPDATE);
+        try (Connection c = ds.getConnection()) {
+            save(c, table, version, lastKey, rows);
+        } finally {
+            guard.exit(token, UPDATE);
+        }
+    }
+
+    private static void save(Connection c, String table, int version, String lastKey, long rows) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int n;
+        try (PreparedStatement ps = c.prepareStatement(UPDATE)) {
+            bindCheckpoint(ps, table, version, lastKey, rows, now);
+            n = ps.executeUpdate();
+        }
+        if (n == 0) {
+            try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+                bindCheckpoint(ps, table, version, lastKey, rows, now);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static void bindCheckpoint(PreparedStatement ps, String table, int version, String lastKey, long rows,
+                                       Timestamp now) throws SQLException {
+        ps.setInt(1, version);
+        ps.setString(2, lastKey);
+        ps.setLong(3, rows);
+        ps.setTimestamp(4, now);
+        ps.setString(5, table);
+    }
+
+    /** 单表的分块读写语句，按计划预拼一次 */
+    private final class Backfill {
+
+        /** 本块最后一个主键（没有更多行时为 null）与改写过的行的 ID */
+        record Result(Object last, List<Object> keys) {}
+
+        private final EntityPlan<?> plan;
+        private final String first;
+        private final String next;
+        private final String update;
+        private final Map<String, EntityPlan.ColumnPlan> byColumn = new HashMap<>();
+        private final boolean numericKey;
+
+        Backfill(EntityPlan<?> plan) {
+            this.plan = plan;
+            String q = "`" + plan.table + "`";
+            String order = " ORDER BY " + plan.id.quoted() + " LIMIT ? FOR UPDATE";
+            this.first = "SELECT * FROM " + q + order;
+            this.next = "SELECT * FROM " + q + " WHERE " + plan.id.quoted() + ">?" + order;
+            // 不带版本条件：迁移改写的是库中当前行，版本号另行加一
+            this.update = "UPDATE " + q + " SET "
+                    + plan.writable.stream().map(c -> c.quoted() + "=?").collect(Collectors.joining(","))
+                    + " WHERE " + plan.id.quoted() + "=?";
+            for (EntityPlan.ColumnPlan c : plan.columns) byColumn.put(c.name().toLowerCase(Locale.ROOT), c);
+            Class<?> t = plan.id.field().getType();
+            this.numericKey = t == long.class || t == Long.class || t == int.class || t == Integer.class;
+        }
+
+        /** 断点中的主键文本还原为绑定值 */
+        Object key(String text) {
+            if (text == null) return null;
+            return numericKey ? Long.parseLong(text) : text;
+        }
+
+        /** 处理一块并记录断点 */
+        Result step(DataSource ds, EntityMigration m, int version, Object after, long rowsBefore) throws SQLException {
+            String sql = after == null ? first : next;
+            long token = guard.enter(sql);
+            try (Connection c = ds.getConnection()) {
+                boolean autoCommit = c.getAutoCommit();
+                c.setAutoCommit(false);
+                try {
+                    List<Object[]> writes = new ArrayList<>();
+                    Object last = null;
+                    int seen = 0;
+                    try (PreparedStatement ps = c.prepareStatement(sql)) {
+                        int i = 1;
+                        if (after != null) ps.setObject(i++, after);
+                        ps.setInt(i, chunk);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            ResultSetMetaData md = rs.getMetaData();
+                            int idIdx = rs.findColumn(plan.id.name());
+                            while (rs.next()) {
+                                seen++;
+                                last = rs.getObject(idIdx);
+                                Object[] w = rewrite(rs, md, m, last);
+                                if (w != null) writes.add(w);
+                            }
+                        }
+                    }
+                    if (!writes.isEmpty()) {
+                        try (PreparedStatement ps = c.prepareStatement(update)) {
+                            for (Object[] w : writes) {
+                                for (int i = 0; i < w.length; i++) ps.setObject(i + 1, w[i]);
+                                ps.addBatch();
+                            }
+                            ps.executeBatch();
+                        }
+                    }
+                    boolean more = seen >= chunk;
+                    long rows = rowsBefore + writes.size();
+                    // 最后一块不写断点，由调用方记下完成的版本
+                    if (more) save(c, plan.table, version, String.valueOf(last), rows);
+                    c.commit();
+                    List<Object> keys = new ArrayList<>(writes.size());
+                    for (Object[] w : writes) keys.add(plan.id.converter().fromDb(w[w.length - 1]));
+                    return new Result(more ? last : null, keys);
+                } catch (SQLException | RuntimeException e) {
+                    c.rollback();
+                    throw e;
+                } finally {
+                    c.setAutoCommit(autoCommit);
+                }
+            } finally {
+                guard.exit(token, sql);
+            }
+        }
+
+        /** 读出一行交给迁移改写；返回 UPDATE 的参数（writable 列值 + 主键），未改动时返回 null */
+        private Object[] rewrite(ResultSet rs, ResultSetMetaData md, EntityMigration m, Object key) throws SQLException {
+            Map<String, Object> row = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 1; i <= md.getColumnCount(); i++) {
+                String label = md.getColumnLabel(i);
+                Object raw = rs.getObject(i);
+                EntityPlan.ColumnPlan col = byColumn.get(label.toLowerCase(Locale.ROOT));
+                row.put(label, col == null ? raw : col.converter().fromDb(raw));
+            }
+            List<EntityPlan.ColumnPlan> cols = plan.writable;
+            Object[] before = new Object[cols.size()];
+            for (int i = 0; i < before.length; i++) before[i] = cols.get(i).converter().toDb(row.get(cols.get(i).name()));
+            m.migrate(row);
+            Object[] out = new Object[cols.size() + 1];
+            boolean dirty = false;
+            for (int i = 0; i < before.length; i++) {
+                EntityPlan.ColumnPlan col = cols.get(i);
+                out[i] = col.converter().toDb(row.get(col.name()));
+                if (!Objects.deepEquals(before[i], out[i])) dirty = true;
+            }
+            if (!dirty) return null;
+            out[out.length - 1] = key;
+            if (plan.version != null) {
+                // 让迁移前读出实体的保存者遇到版本冲突，而不是覆盖迁移结果
+                int vi = cols.indexOf(plan.version);
+                Object v = before[vi];
+                out[vi] = v instanceof Number n ? n.longValue() + 1 : 1L;
+            }
+            return out;
+        }
+    }
+}
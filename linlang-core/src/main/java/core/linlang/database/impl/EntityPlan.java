@@ -0,0 +1,287 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Column;
+import api.linlang.file.database.annotations.Counter;
+import api.linlang.file.database.annotations.Entity;
+import api.linlang.file.database.annotations.Id;
+import api.linlang.file.database.annotations.Index;
+import api.linlang.file.database.annotations.NotNull;
+import api.linlang.file.database.annotations.Transient;
+import api.linlang.file.database.annotations.Version;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 实体执行计划。
+ * <p>
+ * 每个实体类型在打开仓库时构建一次：列顺序、类型、转换器与全部固定 SQL 均在此预先拼好，
+ * 仓库的热路径只负责绑定参数与读取结果。实例不可变，可在线程间共享。
+ */
+final class EntityPlan<T> {
+
+    /**
+     * 单列计划。
+     * @param ordinal SELECT 结果中的序号（从 1 开始）
+     */
+    record ColumnPlan(String name, Field field, int ordinal, String sqlType,
+                      boolean notNull, boolean id, boolean auto, ValueConverter converter,
+                      ColumnAccessor access) {
+        String quoted() { return "`" + name + "`"; }
+
+        String ddl() {
+            String base = quoted() + " " + sqlType + (notNull ? " NOT NULL" : "");
+            if (id && auto) return base + " AUTO_INCREMENT";
+            return base;
+        }
+    }
+
+    /** 计数列的累加与读取语句 */
+    record CounterSql(ColumnPlan column, String increment, String read) {}
+
+    /** 索引计划，列按声明顺序 */
+    record IndexPlan(String name, List<ColumnPlan> columns, boolean unique) {
+        String ddl(String table, SqlDialect dialect) {
+            String cols = columns.stream().map(c -> dialect.indexColumn(c, unique)).collect(Collectors.joining(","));
+            return "CREATE " + (unique ? "UNIQUE " : "") + "INDEX `" + name + "` ON `" + table + "` (" + cols + ")";
+        }
+    }
+
+    final Class<T> type;
+    final String table;
+    final List<ColumnPlan> columns;   // 全部列（SELECT 顺序）
+    final List<ColumnPlan> writable;  // 除 ID 外的列（INSERT 顺序）
+    final List<ColumnPlan> updatable; // writable 中除计数列外的列（UPDATE/upsert 的 SET 顺序）
+    final ColumnPlan id;              // 可能为 null
+    final ColumnPlan version;         // @Version 列，可能为 null
+    final EntityAccessor<T> entity;   // 物化器
+    final List<IndexPlan> indexes;    // 来自 @Index
+    final Map<String, CounterSql> counters;   // @Counter 列，按列名与字段名
+    final List<ColumnPlan> counterColumns;    // @Counter 列，按列顺序
+    final String generator;           // @Id(generator)，未声明为 null
+
+    // —— 预编译 SQL —— //
+    final String selectPrefix;        // SELECT cols FROM `t`
+    final String selectAll;
+    final String selectById;
+    final String existsById;
+    final String count;
+    final String selectCounted;       // SELECT cols, COUNT(*) OVER() FROM `t`
+    final String insert;
+    final String insertAll;           // 含 ID 列，用于客户端生成的 ID
+    final String update;              // 有版本列时带 versionCheck
+    final String versionCheck;        // " AND `v`=?"，无版本列为空串
+    final String versionBackfill;     // 旧行版本为 NULL/0 时补为 1；无版本列为 null
+    final String versionAdopt;        // 同上，仅限单个 ID；无版本列或无 ID 为 null
+    final String deleteById;
+    final String deleteAll;
+    final String createTable;
+    final String keysetFirst;         // 按主键升序的首页：ORDER BY id LIMIT ?
+    final String keysetNext;          // 其后各页：WHERE id > ? ORDER BY id LIMIT ?
+
+    private final Map<String, ColumnPlan> byName;
+
+    private EntityPlan(Class<T> type, String table, List<ColumnPlan> columns, AccessorFactory accessors) {
+        this.type = type;
+        this.table = table;
+        this.columns = List.copyOf(columns);
+        this.id = columns.stream().filter(ColumnPlan::id).findFirst().orElse(null);
+        this.entity = accessors.entity(type, this.columns);
+        this.writable = columns.stream().filter(c -> c != id).toList();
+        this.version = versionOf(type, columns, id);
+        this.counterColumns = countersOf(type, columns, id, version);
+        this.updatable = writable.stream().filter(c -> !counterColumns.contains(c)).toList();
+
+        Map<String, ColumnPlan> names = new HashMap<>();
+        for (ColumnPlan c : columns) {
+            names.put(c.name(), c);
+            names.putIfAbsent(c.field().getName(), c);
+        }
+        this.byName = Collections.unmodifiableMap(names);
+        this.indexes = indexesOf(table, this.columns, this.byName);
+
+        String q = "`" + table + "`";
+        String cols = columns.stream().map(ColumnPlan::quoted).collect(Collectors.joining(","));
+        String whereId = id == null ? null : " WHERE " + id.quoted() + "=?";
+        this.versionCheck = version == null ? "" : " AND " + version.quoted() + "=?";
+        this.versionBackfill = version == null ? null : "UPDATE " + q + " SET " + version.quoted()
+                + "=1 WHERE (" + version.quoted() + " IS NULL OR " + version.quoted() + "=0)";
+        this.versionAdopt = versionBackfill == null || id == null ? null : versionBackfill + " AND " + id.quoted() + "=?";
+
+        this.selectPrefix = "SELECT " + cols + " FROM " + q;
+        this.selectAll = selectPrefix;
+        this.count = "SELECT COUNT(*) FROM " + q;
+        this.selectCounted = "SELECT " + cols + ", COUNT(*) OVER() FROM " + q;
+        this.deleteAll = "DELETE FROM " + q;
+
+        String insCols = writable.stream().map(ColumnPlan::quoted).collect(Collectors.joining(","));
+        String insQs = writable.stream().map(c -> "?").collect(Collectors.joining(","));
+        this.insert = "INSERT INTO " + q + "(" + insCols + ") VALUES(" + insQs + ")";
+        this.insertAll = "INSERT INTO " + q + "(" + cols + ") VALUES("
+                + columns.stream().map(c -> "?").collect(Collectors.joining(",")) + ")";
+        String gen = id == null ? "" : id.field().getAnnotation(Id.class).generator();
+        this.generator = gen.isEmpty() ? null : gen;
+
+        if (id != null) {
+            this.selectById = selectPrefix + whereId + " LIMIT 1";
+            this.existsById = "SELECT 1 FROM " + q + whereId + " LIMIT 1";
+            this.deleteById = "DELETE FROM " + q + whereId;
+            // 只有计数列时没有可整行更新的列，仓库不会发出 UPDATE
+            String sets = updatable.stream().map(c -> c.quoted() + "=?").collect(Collectors.joining(","));
+            this.update = updatable.isEmpty() ? null : "UPDATE " + q + " SET " + sets + whereId + versionCheck;
+            String byId = " ORDER BY " + id.quoted() + " LIMIT ?";
+            this.keysetFirst = selectPrefix + byId;
+            this.keysetNext = selectPrefix + " WHERE " + id.quoted() + ">?" + byId;
+        } else {
+            this.selectById = this.existsById = this.deleteById = this.update = null;
+            this.keysetFirst = this.keysetNext = null;
+        }
+
+        Map<String, CounterSql> ctr = new HashMap<>();
+        for (ColumnPlan c : counterColumns) {
+            CounterSql cs = new CounterSql(c,
+                    "UPDATE " + q + " SET " + c.quoted() + "=" + c.quoted() + "+?" + whereId,
+                    "SELECT " + c.quoted() + " FROM " + q + whereId);
+            ctr.put(c.name(), cs);
+            ctr.putIfAbsent(c.field().getName(), cs);
+        }
+        this.counters = Collections.unmodifiableMap(ctr);
+
+        String colDefs = columns.stream().map(ColumnPlan::ddl).collect(Collectors.joining(", "));
+        this.createTable = "CREATE TABLE IF NOT EXISTS " + q + " (" + colDefs
+                + (id != null ? ", PRIMARY KEY(" + id.quoted() + ")" : "") + ")";
+    }
+
+    /** 按列名或字段名查找列 */
+    Optional<ColumnPlan> column(String name) {
+        return Optional.ofNullable(byName.get(name));
+    }
+
+    /** ID 列不存在时抛出，用于按 ID 操作的方法 */
+    ColumnPlan requireId() {
+        if (id == null) throw new IllegalStateException("@Id missing on " + type);
+        return id;
+    }
+
+    // —— 构建 —— //
+
+    private static ColumnPlan versionOf(Class<?> type, List<ColumnPlan> columns, ColumnPlan id) {
+        ColumnPlan found = null;
+        for (ColumnPlan c : columns) {
+            if (!c.field().isAnnotationPresent(Version.class)) continue;
+            Class<?> t = c.field().getType();
+            if (t != long.class && t != Long.class && t != int.class && t != Integer.class) {
+                throw new IllegalArgumentException("@Version must be int or long: " + c.field());
+            }
+            if (c == id || found != null || id == null) {
+                throw new IllegalArgumentException("@Version needs an @Id and must be a single non-id column on " + type);
+            }
+            found = c;
+        }
+        return found;
+    }
+
+    private static List<ColumnPlan> countersOf(Class<?> type, List<ColumnPlan> columns, ColumnPlan id, ColumnPlan version) {
+        List<ColumnPlan> out = new ArrayList<>();
+        for (ColumnPlan c : columns) {
+            if (!c.field().isAnnotationPresent(Counter.class)) continue;
+            Class<?> t = c.field().getType();
+            if (t != long.class && t != Long.class && t != int.class && t != Integer.class) {
+                throw new IllegalArgumentException("@Counter must be int or long: " + c.field());
+            }
+            if (c == id || c == version || id == null) {
+                throw new IllegalArgumentException("@Counter needs an @Id and cannot be the id or version column on " + type);
+            }
+            out.add(c);
+        }
+        return List.copyOf(out);
+    }
+
+    private static List<IndexPlan> indexesOf(String table, List<ColumnPlan> columns, Map<String, ColumnPlan> byName) {
+        Map<String, IndexPlan> out = new LinkedHashMap<>();
+        for (ColumnPlan c : columns) {
+            Index ix = c.field().getAnnotation(Index.class);
+            if (ix == null) continue;
+            List<ColumnPlan> cols = new ArrayList<>();
+            if (ix.columns().length == 0) cols.add(c);
+            for (String n : ix.columns()) {
+                ColumnPlan ref = byName.get(n);
+                if (ref == null) {
+                    throw new IllegalArgumentException("@Index on " + c.field() + " references unknown column: " + n);
+                }
+                cols.add(ref);
+            }
+            String name = ix.name().isEmpty()
+                    ? (ix.unique() ? "uk_" : "idx_") + table + "_"
+                      + cols.stream().map(ColumnPlan::name).collect(Collectors.joining("_"))
+                    : ix.name();
+            out.putIfAbsent(name.toLowerCase(Locale.ROOT), new IndexPlan(name, List.copyOf(cols), ix.unique()));
+        }
+        return List.copyOf(out.values());
+    }
+
+    static <T> EntityPlan<T> of(Class<T> type, String table) {
+        return of(type, table, Codecs.BUILT_IN, AccessorFactory.METHOD_HANDLES);
+    }
+
+    static <T> EntityPlan<T> of(Class<T> type, String table, AccessorFactory accessors) {
+        return of(type, table, Codecs.BUILT_IN, accessors);
+    }
+
+    static <T> EntityPlan<T> of(Class<T> type, String table, Codecs codecs, AccessorFactory accessors) {
+        boolean implicit = type.isAnnotationPresent(Entity.class);
+
+        List<ColumnPlan> out = new ArrayList<>();
+        for (Field f : type.getDeclaredFields()) {
+            int mod = f.getModifiers();
+            // 跳过 static / Java 关键字 transient 字段
+            if (Modifier.isStatic(mod) || Modifier.isTransient(mod)) continue;
+
+            Id id = f.getAnnotation(Id.class);
+            Column col = f.getAnnotation(Column.class);
+
+            boolean excludedByTransient = f.isAnnotationPresent(Transient.class);
+            boolean include =
+                    (col != null)            // 显式 @Column
+                            || (id != null)             // 主键
+                            || (implicit && !excludedByTransient); // @Entity 默认入库，除非 @Transient
+
+            if (!include) continue;
+
+            String name = (col != null && !col.name().isEmpty()) ? col.name() : f.getName();
+            boolean notNull = f.isAnnotationPresent(NotNull.class) || (col != null && !col.nullable());
+            boolean auto = id != null && id.auto() && id.generator().isEmpty();
+            int ordinal = out.size() + 1;
+            Codecs.Resolved codec = id == null ? codecs.resolve(f) : null;
+            ValueConverter conv = codec != null ? codec.converter() : ValueConverter.forType(f.getType());
+            String sqlType = codec != null ? codec.sqlType() : guessType(f, col);
+            out.add(new ColumnPlan(name, f, ordinal, sqlType, notNull,
+                    id != null, auto, conv, accessors.column(f, conv, ordinal)));
+        }
+        return new EntityPlan<>(type, table, out, accessors);
+    }
+
+    private static String guessType(Field f, Column col) {
+        Class<?> t = f.getType();
+        int len = col == null ? 0 : col.length();
+        if (t == Long.class || t == long.class) return "BIGINT";
+        if (t == Integer.class || t == int.class) return "INT";
+        if (t == Boolean.class || t == boolean.class) return "TINYINT(1)";
+        if (t == Double.class || t == double.class) return "DOUBLE";
+        if (t == Float.class || t == float.class) return "FLOAT";
+        if (t == java.time.Instant.class) return "TIMESTAMP";
+        if (t == java.util.UUID.class) return "VARCHAR(36)";
+        if (t == String.class) {
+            if (len > 0 && len <= 1024) return "VARCHAR(" + len + ")";
+            return "TEXT";
+        }
+        return "TEXT"; // 复杂类型由 Codecs 解析，到这里的是其余 JDK 类型
+    }
+
+    @Override
+    public String toString() {
+        return table;
+    }
+}
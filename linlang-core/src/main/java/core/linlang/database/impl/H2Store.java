@@ -0,0 +1,82 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.config.DbConfig;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * 本地 H2 库的托管：由 dataDocRoot 推导库文件与 URL、设置缓存、在线备份、关闭时压缩。
+ * <p>
+ * {@code BACKUP TO} 在 MVStore 上复制一致快照，备份期间写入照常进行。
+ */
+final class H2Store {
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path root;
+    private final String url;
+    private final boolean local;
+    private final int keep;
+
+    H2Store(Path root, DbConfig cfg) {
+        this.root = root;
+        String u = cfg.url();
+        if (u == null || u.isBlank()) {
+            // 兼容 MySQL 语法（反引号、AUTO_INCREMENT）；关闭由本服务负责，以便压缩
+            u = "jdbc:h2:file:" + root.resolve("linlang").toAbsolutePath()
+                    + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_ON_EXIT=FALSE";
+        }
+        String upper = u.toUpperCase(Locale.ROOT);
+        if (cfg.h2CacheSizeKb() > 0 && !upper.contains(";CACHE_SIZE=")) u += ";CACHE_SIZE=" + cfg.h2CacheSizeKb();
+        this.url = u;
+        // 内存库与 TCP/SSL 服务端库不在本机文件上，不做备份与压缩
+        this.local = !upper.startsWith("JDBC:H2:MEM:") && !upper.startsWith("JDBC:H2:TCP:")
+                && !upper.startsWith("JDBC:H2:SSL:");
+        this.keep = cfg.backupKeep();
+    }
+
+    String url() {
+        return url;
+    }
+
+    boolean local() {
+        return local;
+    }
+
+    /** 在线备份为 backup/linlang-时间.zip，并删除超出保留数的旧备份 */
+    Path backup(DataSource ds) throws SQLException, IOException {
+        Path dir = root.resolve("backup");
+        Files.createDirectories(dir);
+        Path file = dir.resolve("linlang-" + LocalDateTime.now().format(STAMP) + ".zip").toAbsolutePath();
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
+            s.execute("BACKUP TO '" + file.toString().replace("'", "''") + "'");
+        }
+        List<Path> old;
+        try (Stream<Path> files = Files.list(dir)) {
+            old = files.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith("linlang-") && n.endsWith(".zip");
+            }).sorted().toList();
+        }
+        for (int i = 0; i < old.size() - keep; i++) Files.deleteIfExists(old.get(i));
+        return file;
+    }
+
+    /** 关闭库并整理存储文件；之后池中连接全部失效 */
+    void compact(DataSource ds) throws SQLException {
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
+            s.execute("SHUTDOWN COMPACT");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.id.IdGenerator;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户端 ID 生成器注册表与内置实现。
+ * <p>
+ * 两个内置生成器都按“毫秒 + 12 位序号”打包在一个 AtomicLong 中，CAS 推进：同毫秒内序号自增，
+ * 序号溢出时进位到下一毫秒，时钟回拨时沿用已发出的最大时间，因此单节点内严格递增且无锁。
+ */
+final class IdGenerators {
+
+    private static final int SEQ_BITS = 12;
+
+    private final Map<String, IdGenerator> byName = new ConcurrentHashMap<>();
+
+    IdGenerators() {
+        byName.put("uuid7", new Uuid7());
+    }
+
+    void register(String name, IdGenerator generator) {
+        byName.put(name, generator);
+    }
+
+    /** 初始化时登记带节点号的 snowflake；此前已自行注册同名实现的保留 */
+    void registerDefaults(int nodeId) {
+        byName.putIfAbsent("snowflake", new Snowflake(nodeId));
+    }
+
+    IdGenerator get(String name) {
+        IdGenerator g = byName.get(name);
+        if (g == null) throw new IllegalArgumentException("Unknown id generator: " + name);
+        return g;
+    }
+
+    /** 生成值转为 ID 字段类型 */
+    static Object coerce(Object v, Class<?> t) {
+        if (v == null || t.isInstance(v)) return v;
+        if (t == String.class) return v.toString();
+        if (t == UUID.class && v instanceof String s) return UUID.fromString(s);
+        if (v instanceof Number n) {
+            if (t == Long.class || t == long.class) return n.longValue();
+            if (t == Integer.class || t == int.class) return Math.toIntExact(n.longValue());
+        }
+        throw new IllegalStateException("Generated id " + v.getClass().getName() + " does not fit " + t.getName());
+    }
+
+    /** 推进打包状态，返回本次的（毫秒 << 12 | 序号） */
+    private static long advance(AtomicLong state) {
+        long now = System.currentTimeMillis();
+        for (;;) {
+            long s = state.get();
+            // 新的一毫秒从序号 0 开始；否则 +1，溢出自然进位到毫秒位
+            long n = (now > s >>> SEQ_BITS) ? now << SEQ_BITS : s + 1;
+            if (state.compareAndSet(s, n)) return n;
+        }
+    }
+
+    // —— 内置实现 —— //
+
+    /** RFC 9562 UUIDv7：48 位毫秒、12 位单调序号（rand_a）、62 位随机 */
+    static final class Uuid7 implements IdGenerator {
+        private final AtomicLong state = new AtomicLong();
+
+        @Override
+        public Object next() {
+            long s = advance(state);
+            long msb = (s >>> SEQ_BITS) << 16 | 0x7000L | (s & 0xFFFL);
+            long lsb = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+            return new UUID(msb, lsb);
+        }
+    }
+
+    /** 41 位毫秒（自 2024-01-01 起）、10 位节点号、12 位序号 */
+    static final class Snowflake implements IdGenerator {
+        static final long EPOCH = 1704067200000L;
+
+        private final long node;
+        private final AtomicLong state = new AtomicLong();
+
+        Snowflake(int nodeId) {
+            if (nodeId < 0 || nodeId > 1023) throw new IllegalArgumentException("nodeId must be 0..1023: " + nodeId);
+            this.node = nodeId;
+        }
+
+        @Override
+        public Object next() {
+            long s = advance(state);
+            return ((s >>> SEQ_BITS) - EPOCH) << 22 | node << SEQ_BITS | (s & 0xFFFL);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package core.linlang.database.impl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 单表查询结果缓存，键为 SQL 与参数。
+ * <p>
+ * 失效沿用 {@link CountCache} 的表写纪元：条目记录加载时的纪元，纪元变化即整表失效，写路径不做额外工作。
+ * 同一键并发未命中时，只有首个调用方执行加载，其余调用方等待同一个 future。
+ */
+final class QueryCache {
+
+    record Key(String sql, List<Object> params) {}
+
+    private record Entry(long epoch, long expiresAt, Object value) {}
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier epoch;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Key, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+
+    QueryCache(int maxSize, long ttlMillis, LongSupplier epoch) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = Math.max(1L, ttlMillis) * 1_000_000L;
+        this.epoch = epoch;
+    }
+
+    /** 命中则返回缓存结果；否则加载（或等待正在进行的同键加载） */
+    @SuppressWarnings("unchecked")
+    <R> R get(Key key, Supplier<R> loader) {
+        Entry e = entries.get(key);
+        if (e != null && fresh(e, System.nanoTime())) {
+            hits.increment();
+            return (R) e.value;
+        }
+        misses.increment();
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, mine);
+        if (running != null) {
+            waits.increment();
+            try {
+                return (R) running.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException re) throw re;
+                throw ex;
+            }
+        }
+        try {
+            long observed = epoch.getAsLong();
+            R value = loader.get();
+            if (observed == epoch.getAsLong()) {            // 期间已有写入则不缓存
+                if (entries.size() >= maxSize) sweep();
+                entries.put(key, new Entry(observed, System.nanoTime() + ttlNanos, value));
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    private boolean fresh(Entry e, long now) {
+        return e.epoch == epoch.getAsLong() && now - e.expiresAt < 0;
+    }
+
+    /** 先清掉过期与已失效的条目，仍满则整体清空 */
+    private void sweep() {
+        long now = System.nanoTime();
+        entries.values().removeIf(e -> !fresh(e, now));
+        if (entries.size() >= maxSize) entries.clear();
+    }
+
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("queryCache.hits", hits.sum());
+        m.put("queryCache.misses", misses.sum());
+        m.put("queryCache.waits", waits.sum());
+        m.put("queryCache.size", (long) entries.size());
+        return m;
+    }
+}
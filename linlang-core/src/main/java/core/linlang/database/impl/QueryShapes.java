@@ -0,0 +1,148 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.dto.Criteria;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link Criteria} 的编译与按形状缓存。
+ * <p>
+ * 形状只由列、操作符、IN 分桶大小以及排序/分页的有无决定，参数值不参与；同形状的查询共用一条 SQL，
+ * 驱动与数据库侧的预编译语句缓存因此得以命中。IN 列表补齐到 2 的幂（重复末值），避免每个长度各成一形。
+ */
+final class QueryShapes {
+
+    /** 编译结果：where 与排序分页片段，以及各自的参数 */
+    record Compiled(String where, List<Object> whereParams, String tail, List<Object> tailParams) {
+        List<Object> allParams() {
+            if (tailParams.isEmpty()) return whereParams;
+            List<Object> all = new ArrayList<>(whereParams);
+            all.addAll(tailParams);
+            return all;
+        }
+    }
+
+    private record Part(EntityPlan.ColumnPlan col, Criteria.Op op, int width) {}
+
+    private record Sql(String where, String tail) {}
+
+    private final EntityPlan<?> plan;
+    private final int maxShapes;
+    private final Map<String, Sql> shapes = new ConcurrentHashMap<>();
+
+    QueryShapes(EntityPlan<?> plan, int maxShapes) {
+        this.plan = plan;
+        this.maxShapes = Math.max(1, maxShapes);
+    }
+
+    Compiled compile(Criteria c) {
+        StringBuilder key = new StringBuilder();
+        List<Part> parts = new ArrayList<>();
+        List<Object> whereParams = new ArrayList<>();
+        for (Criteria.Condition cond : c.conditions()) {
+            EntityPlan.ColumnPlan col = resolve(cond.column());
+            Criteria.Op op = cond.op();
+            List<Object> vals = cond.values();
+            // = NULL 永不成立，改写为 IS NULL
+            if (op == Criteria.Op.EQ && vals.get(0) == null) op = Criteria.Op.IS_NULL;
+            if (op == Criteria.Op.NE && vals.get(0) == null) op = Criteria.Op.NOT_NULL;
+            int width = 0;
+            switch (op) {
+                case IS_NULL, NOT_NULL -> { }
+                case LIKE -> whereParams.add(vals.get(0));
+                case IN -> {
+                    width = bucket(vals.size());
+                    for (Object v : vals) whereParams.add(col.converter().toDb(v));
+                    Object last = vals.isEmpty() ? null : col.converter().toDb(vals.get(vals.size() - 1));
+                    for (int i = vals.size(); i < width; i++) whereParams.add(last);
+                }
+                default -> whereParams.add(col.converter().toDb(vals.get(0)));
+            }
+            parts.add(new Part(col, op, width));
+            key.append(col.name()).append(' ').append(op).append(width).append(';');
+        }
+        List<Criteria.Order> orders = c.orders();
+        List<EntityPlan.ColumnPlan> orderCols = new ArrayList<>(orders.size());
+        for (Criteria.Order o : orders) {
+            EntityPlan.ColumnPlan col = resolve(o.column());
+            orderCols.add(col);
+            key.append('#').append(col.name()).append(o.ascending() ? '+' : '-');
+        }
+        List<Object> tailParams = new ArrayList<>(2);
+        // MySQL 不接受无 LIMIT 的 OFFSET
+        boolean limited = c.limit() > 0 || c.offset() > 0;
+        if (limited) {
+            key.append("#L");
+            tailParams.add(c.limit() > 0 ? c.limit() : Integer.MAX_VALUE);
+        }
+        if (c.offset() > 0) {
+            key.append("#O");
+            tailParams.add(c.offset());
+        }
+
+        String k = key.toString();
+        Sql sql = shapes.get(k);
+        if (sql == null) {
+            sql = build(parts, orders, orderCols, limited, c.offset() > 0);
+            if (shapes.size() >= maxShapes) shapes.clear();
+            shapes.put(k, sql);
+        }
+        return new Compiled(sql.where(), Collections.unmodifiableList(whereParams), sql.tail(), tailParams);
+    }
+
+    int size() {
+        return shapes.size();
+    }
+
+    // —— 内部 —— //
+
+    private EntityPlan.ColumnPlan resolve(String name) {
+        return plan.column(name).orElseThrow(() ->
+                new IllegalArgumentException("Unknown column '" + name + "' on " + plan.type.getName()));
+    }
+
+    private static Sql build(List<Part> parts, List<Criteria.Order> orders, List<EntityPlan.ColumnPlan> orderCols,
+                             boolean limit, boolean offset) {
+        StringBuilder where = new StringBuilder();
+        for (Part p : parts) {
+            where.append(where.length() == 0 ? " WHERE " : " AND ");
+            String q = p.col().quoted();
+            switch (p.op()) {
+                case EQ -> where.append(q).append("=?");
+                case NE -> where.append(q).append("<>?");
+                case LT -> where.append(q).append("<?");
+                case LE -> where.append(q).append("<=?");
+                case GT -> where.append(q).append(">?");
+                case GE -> where.append(q).append(">=?");
+                case LIKE -> where.append(q).append(" LIKE ?");
+                case IS_NULL -> where.append(q).append(" IS NULL");
+                case NOT_NULL -> where.append(q).append(" IS NOT NULL");
+                case IN -> {
+                    if (p.width() == 0) {
+                        where.append("1=0");
+                    } else {
+                        where.append(q).append(" IN (?");
+                        where.append(",?".repeat(p.width() - 1)).append(')');
+                    }
+                }
+            }
+        }
+        StringBuilder tail = new StringBuilder();
+        for (int i = 0; i < orders.size(); i++) {
+            tail.append(i == 0 ? " ORDER BY " : ",").append(orderCols.get(i).quoted())
+                    .append(orders.get(i).ascending() ? " ASC" : " DESC");
+        }
+        if (limit) tail.append(" LIMIT ?");
+        if (offset) tail.append(" OFFSET ?");
+        return new Sql(where.toString(), tail.toString());
+    }
+
+    /** 0、1 原样；其余向上取 2 的幂 */
+    private static int bucket(int n) {
+        return n <= 1 ? n : Integer.highestOneBit(n - 1) << 1;
+    }
+}
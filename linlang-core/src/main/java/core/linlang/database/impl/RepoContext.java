@@ -0,0 +1,29 @@
+package core.linlang.database.impl;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 仓库共享的运行时依赖，由 {@link DataServiceImpl} 按数据源各构建一份后传给 {@link RepositoryImpl}。
+ * journal 与数据源的熔断器仅在降级模式下非 null。
+ */
+record RepoContext(DataSourceGroup source, int batchSize, long counterFlushMillis,
+                   ScheduledExecutorService scheduler, BlockingCallGuard guard, Transactions tx,
+                   IdGenerators ids, WriteJournal journal) {
+    RepoContext {
+        batchSize = Math.max(1, batchSize);
+    }
+
+    /** 主库 */
+    DataSource ds() {
+        return source.primary();
+    }
+
+    SqlDialect dialect() {
+        return source.dialect();
+    }
+
+    CircuitBreaker breaker() {
+        return source.breaker();
+    }
+}
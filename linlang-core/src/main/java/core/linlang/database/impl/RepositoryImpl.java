@@ -1,296 +1,1187 @@
 package core.linlang.database.impl;
 
-import api.linlang.file.database.annotations.Column;
-import api.linlang.file.database.annotations.Entity;
-import api.linlang.file.database.annotations.Id;
-import api.linlang.file.database.annotations.Transient;
+import api.linlang.file.database.annotations.Cached;
+import api.linlang.file.database.annotations.DirtyTracking;
+import api.linlang.file.database.annotations.QueryCached;
+import api.linlang.file.database.annotations.Resident;
+import api.linlang.file.database.annotations.WriteBehind;
+import api.linlang.file.database.dto.Criteria;
 import api.linlang.file.database.dto.Page;
 import api.linlang.file.database.dto.QuerySpec;
+import api.linlang.file.database.id.IdGenerator;
+import api.linlang.file.database.repo.DatabaseUnavailableException;
+import api.linlang.file.database.repo.OptimisticLockException;
 import api.linlang.file.database.repo.Repository;
 
-import javax.sql.DataSource;
-import java.lang.reflect.Field;
 import java.sql.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public final class RepositoryImpl<T, ID> implements Repository<T, ID> {
-    private final DataSource ds;
-    private final Class<T> type;
-    private final String table;
-    private final List<Field> fields;      // 可持久化字段
-    private final Field idField;
-    private final Map<Field, String> colName;
-
-    RepositoryImpl(DataSource ds, Class<T> type, String table) {
-        this.ds = ds;
-        this.type = type;
-        this.table = table;
-        List<Field> tmp = new ArrayList<>();
-        Map<Field, String> names = new LinkedHashMap<>();
-        Field idF = null;
-        boolean implicit = type.isAnnotationPresent(Entity.class);
-
-        for (Field f : type.getDeclaredFields()) {
-            int mod = f.getModifiers();
-            if (java.lang.reflect.Modifier.isStatic(mod) || java.lang.reflect.Modifier.isTransient(mod)) continue;
-
-            Column c = f.getAnnotation(Column.class);
-            Id id = f.getAnnotation(Id.class);
-
-            boolean excludedByTransient = f.isAnnotationPresent(Transient.class);
-            boolean include =
-                    (c != null) || (id != null) || (implicit && !excludedByTransient);
-
-            if (!include) continue;
-
-            f.setAccessible(true);
-            if (id != null) idF = f;
-            String name = (c != null && !c.name().isEmpty()) ? c.name() : f.getName();
-            tmp.add(f);
-            names.put(f, name);
-        }
-        this.fields = tmp;
-        this.colName = names;
-        this.idField = idF;
+    private final RepoContext ctx;
+    private final EntityPlan<T> plan;
+    private final int batchSize;
+    private final WriteBehindBuffer<T> behind;   // 未启用 @WriteBehind 时为 null
+    private final EntityCache<T> cache;          // 未启用 @Cached 时为 null
+    private final DirtyTracker<T> dirty;         // 未启用 @DirtyTracking 时为 null
+    private final CounterBuffer counters;        // 无整数列时为 null
+    private final ResidentTable<T> resident;     // 未启用 @Resident 时为 null
+    private final CountCache counts = new CountCache(256);
+    private final QueryShapes shapes;
+    private final String upsert;                 // 仅应用分配的 ID（非自增）；MySQL 表另有唯一索引时为 null
+    private final boolean assigned;              // ID 由应用分配（非自增）
+    private final IdGenerator ids;               // 未声明 @Id(generator) 时为 null
+    private final EntityPlan.ColumnPlan version; // 未声明 @Version 时为 null
+    private final boolean replicaReads;          // 查询是否可分到只读副本
+    private final QueryCache queries;            // 未启用 @QueryCached 时为 null
+
+    /** 在一个池连接上执行的 JDBC 工作 */
+    @FunctionalInterface
+    interface SqlWork<R> {
+        R run(Connection c) throws SQLException;
+    }
+
+    RepositoryImpl(RepoContext ctx, EntityPlan<T> plan) {
+        this.ctx = ctx;
+        this.plan = plan;
+        this.batchSize = ctx.batchSize();
+        this.shapes = new QueryShapes(plan, 512);
+        this.assigned = plan.id != null && !plan.id.auto();
+        this.upsert = assigned ? ctx.dialect().upsert(plan) : null;
+        this.ids = plan.generator == null ? null : ctx.ids().get(plan.generator);
+        this.version = plan.version;
+        this.resident = plan.id != null && plan.type.isAnnotationPresent(Resident.class)
+                ? new ResidentTable<>(plan, ctx.dialect().caseInsensitive()) : null;
+        Cached cached = plan.type.getAnnotation(Cached.class);
+        // 常驻表已覆盖按 ID 读取，不再叠加缓存
+        this.cache = cached == null || plan.id == null || resident != null ? null : new EntityCache<>(cached);
+        QueryCached qc = plan.type.getAnnotation(QueryCached.class);
+        this.queries = qc == null ? null : new QueryCache(qc.maxSize(), qc.ttlMillis(), counts::epoch);
+        DirtyTracking dt = plan.type.getAnnotation(DirtyTracking.class);
+        this.dirty = dt == null || plan.id == null ? null : new DirtyTracker<>(plan, dt.maxSnapshots());
+        this.counters = plan.counters.isEmpty() ? null
+                : new CounterBuffer(plan.table, this::writeCounters, ctx.counterFlushMillis(), ctx.scheduler());
+        WriteBehind wb = plan.type.getAnnotation(WriteBehind.class);
+        if (wb != null && version != null) {
+            throw new IllegalStateException("@Version cannot be combined with @WriteBehind on " + plan.type);
+        }
+        this.behind = wb == null ? null
+                : new WriteBehindBuffer<>(plan.table, this::writeAll, this::pendingKey, wb.maxPending(),
+                        wb.flushMillis(), ctx.scheduler());
+        // 缓存、脏跟踪快照、版本号与常驻表须基于主库的最新值，副本的复制延迟会让后续写入出错；
+        // 查询缓存按写纪元失效，写后立即从滞后的副本读到的旧结果会以新纪元缓存下来
+        this.replicaReads = ctx.source().hasReplicas() && cache == null && dirty == null && version == null
+                && resident == null && queries == null;
+        if (resident != null) loadResident();
+    }
+
+    /**
+     * 所有 JDBC 调用的唯一入口：借连接、经主线程检测计时、包装 SQLException。
+     * 降级模式下先过熔断器，连接类失败抛出 {@link DatabaseUnavailableException}；
+     * 慢调用只按借连接的等待计，批量写入与大查询的执行耗时不计入熔断。
+     */
+    private <R> R jdbc(String sql, SqlWork<R> work) {
+        long token = ctx.guard().enter(sql);
+        try {
+            return primary(sql, work);
+        } finally {
+            ctx.guard().exit(token, sql);
+        }
+    }
+
+    /** 主库执行（含熔断），不经主线程检测；由 {@link #jdbc} 与 {@link #read} 在各自的检测区间内调用 */
+    private <R> R primary(String sql, SqlWork<R> work) {
+        CircuitBreaker breaker = ctx.breaker();
+        if (breaker != null && !breaker.allow()) {
+            throw new DatabaseUnavailableException("Database circuit open, rejected: " + plan.table);
+        }
+        long start = System.nanoTime();
+        long waited = 0L;
+        boolean down = false;
+        try (Connection c = connect()) {
+            waited = System.nanoTime() - start;
+            return work.run(c);
+        } catch (SQLException e) {
+            if (breaker != null && CircuitBreaker.unavailable(e)) {
+                down = true;
+                throw new DatabaseUnavailableException(e);
+            }
+            throw new RuntimeException(e);
+        } finally {
+            if (breaker != null) {
+                if (down) breaker.failure();
+                else breaker.success(waited);
+            }
+        }
+    }
+
+    /**
+     * 查询入口：可分流且不在事务单元内时在副本上执行，副本连不上则暂停它并改走主库；
+     * 单元内随单元走主库，读得到本单元已写入的数据。
+     */
+    private <R> R read(String sql, SqlWork<R> work) {
+        DataSourceGroup.Replica r = replica();
+        if (r == null) return jdbc(sql, work);
+        // 副本与回落主库算同一次调用，只进出检测一次
+        long token = ctx.guard().enter(sql);
+        try {
+            long start = System.nanoTime();
+            try (Connection c = r.ds().getConnection()) {
+                R out = work.run(c);
+                r.observe(System.nanoTime() - start);
+                return out;
+            } catch (SQLException e) {
+                if (!CircuitBreaker.unavailable(e)) throw new RuntimeException(e);
+                ctx.source().down(r);
+            }
+            return primary(sql, work);
+        } finally {
+            ctx.guard().exit(token, sql);
+        }
+    }
+
+    private DataSourceGroup.Replica replica() {
+        return replicaReads && !ctx.tx().active() ? ctx.source().pick() : null;
+    }
+
+    // —— 降级日志 —— //
+
+    /** 日志尚未回放完或熔断未关闭时，写入直接记日志，保持与已记录写入的先后顺序 */
+    private boolean journaling() {
+        return journalable() && (ctx.journal().pending() || !ctx.breaker().closed());
+    }
+
+    /** 版本化实体无法离线校验版本，事务单元内的写入须随单元提交，二者都不记日志 */
+    private boolean journalable() {
+        return ctx.journal() != null && version == null && !ctx.tx().active();
+    }
+
+    /** 按需走数据库或日志；数据库写入途中发现不可达时补记日志 */
+    private <R> R writeOrJournal(Supplier<R> direct, Supplier<R> journaled) {
+        if (journaling()) return journaled.get();
+        try {
+            return direct.get();
+        } catch (DatabaseUnavailableException ex) {
+            if (!journalable()) throw ex;
+            return journaled.get();
+        }
+    }
+
+    /** 记一条保存：尚无 ID 的记为自增插入，其余整行记为 upsert */
+    private T journalSave(T e) {
+        Object idVal = idOf(e);
+        if (isNew(idVal)) ctx.journal().append(plan.table, WriteJournal.INSERT, dbValues(plan.writable, e));
+        else ctx.journal().append(plan.table, WriteJournal.SAVE, dbValues(plan.columns, e));
+        return e;
+    }
+
+    private Object[] dbValues(List<EntityPlan.ColumnPlan> cols, T e) {
+        Object[] v = new Object[cols.size()];
+        for (int i = 0; i < v.length; i++) {
+            EntityPlan.ColumnPlan col = cols.get(i);
+            v[i] = col.converter().toDb(col.access().get(e));
+        }
+        return v;
+    }
+
+    /** 日志回放写入了本表：计数缓存失效，常驻表重新加载（日志中的自增新行此时才有 ID） */
+    void replayed() {
+        counts.written();
+        if (resident != null) loadResident();
+    }
+
+    /**
+     * 后台数据迁移提交了一块：这些行的缓存作废，常驻行从主库重新读取，之后读出的是迁移后的状态。
+     * 脏跟踪快照保留：迁移前读出的实体再保存时只写它自己改过的列，迁移改写的列不会被旧值覆盖。
+     */
+    void migrated(List<Object> ids) {
+        counts.written();
+        for (Object id : ids) {
+            if (cache != null) cache.invalidate(id);
+            if (resident != null) {
+                Optional<T> row = one(plan.selectById, plan.id.converter().toDb(id));
+                if (row.isPresent()) resident.put(row.get());
+                else resident.remove(id);
+            }
+        }
+    }
+
+    /** 常驻表总从主库加载 */
+    private void loadResident() {
+        resident.load(jdbc(plan.selectAll, c -> listOn(c, plan.selectAll)));
+    }
+
+    /** 事务单元内返回单元的连接（close 无效），否则从主库池中借出 */
+    private Connection connect() throws SQLException {
+        UnitOfWork uow = ctx.tx().current(ctx.ds());
+        if (uow == null) return ctx.ds().getConnection();
+        uow.enlist(this, this::discardState);
+        return uow.connection();
+    }
+
+    /**
+     * 写入完成后推进写纪元，使计数与查询缓存失效。事务单元内在提交后再推进一次：
+     * 提交前其他线程读到并缓存的旧值，随提交一并作废。
+     */
+    private void written() {
+        counts.written();
+        UnitOfWork uow = ctx.tx().joined(ctx.ds());
+        if (uow != null) uow.afterCommit(counts, counts::written);
+    }
+
+    /** 事务单元回滚后，丢弃可能含未提交写入的内存状态 */
+    private void discardState() {
+        counts.written();
+        if (cache != null) cache.clear();
+        if (dirty != null) dirty.clear();
+        if (resident != null) loadResident();
+    }
+
+    /** 事务单元内绕过延迟写，保证写入属于该单元 */
+    private boolean buffered() {
+        return behind != null && !ctx.tx().active();
     }
 
     @Override
     public T save(T e) {
+        if (buffered()) {
+            // 先分配 ID，延迟写按 ID 合并，调用方立即拿到 ID
+            e = assignId(e);
+            Object key = pendingKey(e);
+            behind.save(key, e);
+            if (key != null) remember(e);
+            return e;
+        }
+        T saved = saveNow(e);
+        remember(saved);
+        return saved;
+    }
+
+    /**
+     * 保存后更新缓存与常驻表。实体上的计数列是读出时的旧值：有计数列时缓存条目作废而不是覆盖，
+     * 常驻表沿用已累加的计数值。
+     */
+    private void remember(T e) {
+        if (cache != null) {
+            if (plan.counterColumns.isEmpty()) cache.put(idOf(e), e);
+            else cache.invalidate(idOf(e));
+        }
+        if (resident != null) {
+            Optional<T> cur = plan.counterColumns.isEmpty() ? Optional.empty() : resident.get(idOf(e));
+            T row = e;
+            if (cur.isPresent()) {
+                for (EntityPlan.ColumnPlan col : plan.counterColumns) {
+                    row = plan.entity.with(row, col, col.access().get(cur.get()));
+                }
+            }
+            resident.put(row);
+        }
+    }
+
+    private Object idOf(T e) {
+        return plan.id == null ? null : plan.id.access().get(e);
+    }
+
+    /** 延迟写合并用的 ID，新实体为 null */
+    private Object pendingKey(T e) {
+        Object idVal = idOf(e);
+        return isNew(idVal) ? null : idVal;
+    }
+
+    /** 配置了生成器且 ID 未赋值时分配 ID；不可变实体返回新实例 */
+    private T assignId(T e) {
+        if (ids == null || !isNew(idOf(e))) return e;
+        return plan.entity.with(e, plan.id, IdGenerators.coerce(ids.next(), plan.id.field().getType()));
+    }
+
+    private T saveNow(T e) {
         try {
-            Object idVal = idField == null ? null : idField.get(e);
-            if (idVal == null || (idVal instanceof Number && ((Number) idVal).longValue() == 0L)) {
-                // insert
-                String cols = fields.stream().filter(f -> f != idField).map(colName::get).collect(Collectors.joining(","));
-                String qs = fields.stream().filter(f -> f != idField).map(f -> "?").collect(Collectors.joining(","));
-                String sql = "INSERT INTO `" + table + "`(" + cols + ") VALUES(" + qs + ")";
-                try (Connection c = ds.getConnection();
-                     PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                    int i = 1;
-                    for (Field f : fields) {
-                        if (f == idField) continue;
-                        ps.setObject(i++, toDb(f.get(e)));
+            return writeOrJournal(() -> saveOne(e), () -> {
+                T row = journalSave(assignId(e));
+                if (dirty != null) dirty.capture(row);
+                return row;
+            });
+        } finally {
+            written();
+        }
+    }
+
+    private T saveOne(T e) {
+        EntityPlan.ColumnPlan id = plan.id;
+        Object idVal = id == null ? null : id.access().get(e);
+        Object before = version == null ? null : version.access().get(e);
+        if (placed(e)) {
+            // ID 在插入前已确定：确定是新行，直接带 ID 插入，无需取回键
+            T fresh = initVersion(assignId(e));
+            try {
+                jdbc(plan.insertAll, c -> {
+                    try (PreparedStatement ps = c.prepareStatement(plan.insertAll)) {
+                        bindColumns(ps, fresh);
+                        return ps.executeUpdate();
                     }
-                    ps.executeUpdate();
-                    if (idField != null) {
-                        try (ResultSet rs = ps.getGeneratedKeys()) {
-                            if (rs.next()) {
-                                Object gen = rs.getObject(1);
-                                if (idField.getType() == Long.class || idField.getType() == long.class)
-                                    idField.set(e, ((Number) gen).longValue());
-                                else idField.set(e, gen);
+                });
+            } catch (RuntimeException ex) {
+                restoreVersion(e, before);
+                if (version == null || !duplicateKey(ex)) throw ex;
+                // 行已存在：版本为 NULL/0 的旧行按已存在处理，转为整行乐观锁更新；否则他处已插入同一 ID
+                if (!isNew(idVal) && adoptLegacy(idVal)) {
+                    return updateVersioned(plan.entity.with(e, version, versionValue(1L)), idVal, DirtyTracker.FULL);
+                }
+                throw conflict(idOf(fresh), 0L);
+            }
+            if (dirty != null) dirty.capture(fresh);
+            return fresh;
+        }
+        if (isNew(idVal)) {
+            // insert
+            T row = initVersion(e);
+            try {
+                return jdbc(plan.insert, c -> {
+                    try (PreparedStatement ps = c.prepareStatement(plan.insert, Statement.RETURN_GENERATED_KEYS)) {
+                        bindWritable(ps, row);
+                        ps.executeUpdate();
+                        T saved = row;
+                        if (id != null) {
+                            try (ResultSet rs = ps.getGeneratedKeys()) {
+                                if (rs.next()) saved = plan.entity.with(row, id, id.converter().fromDb(rs.getObject(1)));
                             }
                         }
+                        if (dirty != null) dirty.capture(saved);
+                        return saved;
                     }
-                }
-            } else {
-                // update
-                String sets = fields.stream().filter(f -> f != idField)
-                        .map(f -> "`" + colName.get(f) + "`=?").collect(Collectors.joining(","));
-                String sql = "UPDATE `" + table + "` SET " + sets + " WHERE `" + colName.get(idField) + "`=?";
-                try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-                    int i = 1;
-                    for (Field f : fields) {
-                        if (f == idField) continue;
-                        ps.setObject(i++, toDb(f.get(e)));
-                    }
-                    ps.setObject(i, idField.get(e));
-                    ps.executeUpdate();
-                }
+                });
+            } catch (RuntimeException ex) {
+                restoreVersion(e, before);
+                throw ex;
             }
+        }
+        // 应用分配的 ID：不确定行是否存在时单语句 upsert，免去先查后写
+        if (upserts(e)) {
+            jdbc(plan.insertAll, c -> upsertOn(c, e));
+            if (dirty != null) dirty.capture(e);
             return e;
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
         }
+        // update：启用脏检查时只写变化的列，无变化直接返回
+        long mask = changes(e);
+        if (mask == 0L) return e;
+        if (version != null) return updateVersioned(e, idVal, mask);
+        String sql = dirty == null ? plan.update : dirty.updateSql(mask);
+        jdbc(sql, c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                int i = dirty == null ? bindUpdatable(ps, e) : dirty.bind(ps, e, mask);
+                ps.setObject(i, id.converter().toDb(idVal));
+                return ps.executeUpdate();
+            }
+        });
+        if (dirty != null) dirty.capture(e);
+        return e;
+    }
+
+    /** 乐观锁更新：WHERE id=? AND version=?，写入加一后的版本；未命中行即冲突 */
+    private T updateVersioned(T e, Object idVal, long mask) {
+        long expected = versionOf(e);
+        Object before = version.access().get(e);
+        T next = plan.entity.with(e, version, versionValue(expected + 1));
+        long m = mask == DirtyTracker.FULL ? mask : mask | dirty.versionBit();
+        String sql = dirty == null ? plan.update : dirty.updateSql(m);
+        int n;
+        try {
+            n = jdbc(sql, c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    int i = dirty == null ? bindUpdatable(ps, next) : dirty.bind(ps, next, m);
+                    ps.setObject(i++, plan.id.converter().toDb(idVal));
+                    ps.setLong(i, expected);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (RuntimeException ex) {
+            restoreVersion(e, before);
+            throw ex;
+        }
+        if (n == 0) {
+            restoreVersion(e, before);
+            // 读出时版本为 NULL/0 的旧行：补为 1 后按版本 1 重试一次
+            if (expected == 0L && adoptLegacy(idVal)) {
+                return updateVersioned(plan.entity.with(e, version, versionValue(1L)), idVal, mask);
+            }
+            throw conflict(idVal, expected);
+        }
+        if (dirty != null) dirty.capture(next);
+        return next;
+    }
+
+    /**
+     * 插入前已确定 ID 的新行：生成器待分配，或带 ID、版本为 0 且不是读出的实体。
+     * 入库的行版本至少为 1（建表同步时补齐旧行），脏检查快照则直接标记了读出的实体。
+     */
+    private boolean placed(T e) {
+        if (isNew(idOf(e))) return ids != null;
+        return version != null && versionOf(e) == 0L && (dirty == null || !dirty.tracked(e));
+    }
+
+    /** 将该 ID 上版本为 NULL/0 的旧行补为版本 1；返回是否确有这样的行 */
+    private boolean adoptLegacy(Object idVal) {
+        return jdbc(plan.versionAdopt, c -> {
+            try (PreparedStatement ps = c.prepareStatement(plan.versionAdopt)) {
+                ps.setObject(1, plan.id.converter().toDb(idVal));
+                return ps.executeUpdate();
+            }
+        }) > 0;
+    }
+
+    private long versionOf(T e) {
+        Object v = version.access().get(e);
+        return v == null ? 0L : ((Number) v).longValue();
+    }
+
+    private Object versionValue(long v) {
+        Class<?> t = version.field().getType();
+        return t == int.class || t == Integer.class ? (Object) Math.toIntExact(v) : (Object) v;
+    }
+
+    /** 新行的版本从 1 开始 */
+    private T initVersion(T e) {
+        return version == null ? e : plan.entity.with(e, version, versionValue(1L));
+    }
+
+    /** 写入失败时撤销可变实体上版本号的原地修改 */
+    private void restoreVersion(T e, Object before) {
+        if (version != null && plan.entity.mutable()) version.access().set(e, before);
+    }
+
+    /** 冲突后丢弃该 ID 的内存状态（常驻表重读该行），返回要抛出的异常 */
+    private OptimisticLockException conflict(Object idVal, long expected) {
+        if (idVal != null) {
+            if (cache != null) cache.invalidate(idVal);
+            if (dirty != null) dirty.forget(idVal);
+            if (resident != null) {
+                Optional<T> row = one(plan.selectById, plan.id.converter().toDb(idVal));
+                if (row.isPresent()) resident.put(row.get());
+                else resident.remove(idVal);
+            }
+        }
+        return new OptimisticLockException(plan.type, idVal, expected);
+    }
+
+    private static boolean duplicateKey(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof SQLException s && ("23505".equals(s.getSQLState()) || s.getErrorCode() == 1062)) return true;
+        }
+        return false;
+    }
+
+    /** ID 为空或数值 0 视为新实体 */
+    private static boolean isNew(Object idVal) {
+        return idVal == null || (idVal instanceof Number && ((Number) idVal).longValue() == 0L);
+    }
+
+    /** 非自增 ID、无版本列且没有“行已存在”的快照时走 upsert */
+    private boolean upserts(T e) {
+        return assigned && version == null && (dirty == null || !dirty.tracked(e));
+    }
+
+    /** 按计划顺序绑定全部列（含 ID），用于 upsert 与带 ID 的插入 */
+    private void bindColumns(PreparedStatement ps, T e) throws SQLException {
+        int i = 1;
+        for (EntityPlan.ColumnPlan col : plan.columns) {
+            col.access().bind(ps, i++, e);
+        }
+    }
+
+    /** 按计划顺序绑定非 ID 列，用于插入 */
+    private void bindWritable(PreparedStatement ps, T e) throws SQLException {
+        int i = 1;
+        for (EntityPlan.ColumnPlan col : plan.writable) {
+            col.access().bind(ps, i++, e);
+        }
+    }
+
+    /** 按计划顺序绑定整行 UPDATE 的 SET 列（不含计数列），返回下一个参数序号 */
+    private int bindUpdatable(PreparedStatement ps, T e) throws SQLException {
+        int i = 1;
+        for (EntityPlan.ColumnPlan col : plan.updatable) {
+            col.access().bind(ps, i++, e);
+        }
+        return i;
+    }
+
+    /** 更新要写的列：启用脏检查时为变化列的掩码，否则整行；只有计数列的实体没有可写的列 */
+    private long changes(T e) {
+        if (plan.update == null) return 0L;
+        return dirty == null ? DirtyTracker.FULL : dirty.diff(e);
     }
 
 
     @Override
     public void deleteById(ID id) {
-        String sql = "DELETE FROM `" + table + "` WHERE `" + colName.get(idField) + "`=?";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setObject(1, id);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        plan.requireId();
+        if (cache != null) cache.invalidate(id);
+        if (dirty != null) dirty.forget(id);
+        if (resident != null) resident.remove(id);
+        if (buffered()) {
+            behind.delete(id);
+            return;
         }
+        Object key = plan.id.converter().toDb(id);
+        writeOrJournal(() -> update(plan.deleteById, key), () -> {
+            ctx.journal().append(plan.table, WriteJournal.DELETE, new Object[]{key});
+            return 0;
+        });
     }
 
     @Override
     public Optional<T> findById(ID id) {
-        String cols = fields.stream().map(f -> "`" + colName.get(f) + "`").collect(Collectors.joining(","));
-        String sql = "SELECT " + cols + " FROM `" + table + "` WHERE `" + colName.get(idField) + "`=? LIMIT 1";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setObject(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return Optional.of(fromRow(rs));
-                return Optional.empty();
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        plan.requireId();
+        if (resident != null) return resident.get(id);
+        if (behind != null) {
+            WriteBehindBuffer.Pending<T> p = behind.lookup(id);
+            if (p != null) return p.deleted() ? Optional.empty() : Optional.of(p.entity());
         }
+        if (cache != null) {
+            Optional<T> hit = cache.get(id);
+            if (hit != null) return hit;
+        }
+        // 查库期间有保存或失效时不回填，避免把读到的旧行放回缓存
+        long stamp = cache == null ? 0L : cache.stamp(id);
+        Optional<T> found = one(plan.selectById, plan.id.converter().toDb(id));
+        if (cache != null) {
+            if (found.isPresent()) cache.fill(id, found.get(), stamp);
+            else cache.fillMiss(id, stamp);
+        }
+        return found;
     }
 
     @Override
     public java.util.List<T> findAll() {
-        String cols = fields.stream().map(f -> "`" + colName.get(f) + "`").collect(Collectors.joining(","));
-        String sql = "SELECT " + cols + " FROM `" + table + "`";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            List<T> out = new ArrayList<>();
-            while (rs.next()) out.add(fromRow(rs));
-            return out;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        if (resident != null) return resident.all();
+        flushPending();
+        return list(plan.selectAll);
     }
 
     @Override
     public Page<T> query(QuerySpec spec) {
         // 极简：where 原样拼接 + limit/offset
-        String cols = fields.stream().map(f -> "`" + colName.get(f) + "`").collect(Collectors.joining(","));
-        StringBuilder sql = new StringBuilder("SELECT ").append(cols).append(" FROM `").append(table).append("`");
-        if (spec.where() != null && !spec.where().isBlank()) sql.append(" WHERE ").append(spec.where());
-        if (spec.orderBy() != null && !spec.orderBy().isBlank()) sql.append(" ORDER BY ").append(spec.orderBy());
-        if (spec.limit() > 0) sql.append(" LIMIT ").append(spec.limit());
-        if (spec.offset() > 0) sql.append(" OFFSET ").append(spec.offset());
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql.toString())) {
-            int i = 1;
-            for (Object p : spec.params()) ps.setObject(i++, p);
-            List<T> out = new ArrayList<>();
+        flushPending();
+        String where = spec.where() != null && !spec.where().isBlank() ? " WHERE " + spec.where() : "";
+        StringBuilder tail = new StringBuilder();
+        if (spec.orderBy() != null && !spec.orderBy().isBlank()) tail.append(" ORDER BY ").append(spec.orderBy());
+        if (spec.limit() > 0) tail.append(" LIMIT ").append(spec.limit());
+        if (spec.offset() > 0) tail.append(" OFFSET ").append(spec.offset());
+        return runPage(where, spec.params(), tail.toString(), List.of(), spec.total(), spec.offset());
+    }
+
+    @Override
+    public Page<T> query(Criteria criteria) {
+        if (resident != null) {
+            ResidentTable.Result<T> r = resident.query(criteria);
+            return new Page<>(r.items(), criteria.total() ? r.total() : r.items().size(), criteria.offset());
+        }
+        flushPending();
+        QueryShapes.Compiled q = shapes.compile(criteria);
+        return runPage(q.where(), q.whereParams(), q.tail(), q.tailParams(), criteria.total(), criteria.offset());
+    }
+
+    @Override
+    public List<T> find(Criteria criteria) {
+        if (resident != null) return resident.query(criteria).items();
+        flushPending();
+        QueryShapes.Compiled q = shapes.compile(criteria);
+        String sql = plan.selectPrefix + q.where() + q.tail();
+        List<Object> params = q.allParams();
+        return cachedQuery(sql, params, () -> List.copyOf(list(sql, params.toArray())));
+    }
+
+    /** 启用 @QueryCached 时经查询缓存（结果须不可变）；事务单元内直接查询，既读到单元内的写入也不把它们放进缓存 */
+    private <R> R cachedQuery(String sql, List<Object> params, Supplier<R> load) {
+        if (queries == null || ctx.tx().active()) return load.get();
+        return queries.get(new QueryCache.Key(sql, params), load);
+    }
+
+    private Page<T> runPage(String where, List<Object> whereParams, String tail, List<Object> tailParams,
+                            boolean withTotal, int offset) {
+        if (queries == null) return loadPage(where, whereParams, tail, tailParams, withTotal, offset);
+        // 键区分是否带总数；offset 已在 tail 中
+        String sql = (withTotal ? "PAGE+TOTAL " : "PAGE ") + plan.selectPrefix + where + tail;
+        List<Object> params = new ArrayList<>(whereParams);
+        params.addAll(tailParams);
+        return cachedQuery(sql, params, () -> {
+            Page<T> p = loadPage(where, whereParams, tail, tailParams, withTotal, offset);
+            return new Page<>(List.copyOf(p.items()), p.total(), p.offset());
+        });
+    }
+
+    /** where 与 tail（排序分页）分开传入，计数只用 where 部分 */
+    private Page<T> loadPage(String where, List<Object> whereParams, String tail, List<Object> tailParams,
+                             boolean withTotal, int offset) {
+        Object[] params = whereParams.toArray();
+        Object[] pageParams = params;
+        if (!tailParams.isEmpty()) {
+            pageParams = Arrays.copyOf(params, params.length + tailParams.size());
+            for (int i = 0; i < tailParams.size(); i++) pageParams[params.length + i] = tailParams.get(i);
+        }
+        String pageSql = plan.selectPrefix + where + tail;
+        if (!withTotal) {
+            List<T> out = list(pageSql, pageParams);
+            return new Page<>(out, out.size(), offset);
+        }
+
+        // 总数：优先命中计数缓存；否则窗口函数一次往返，或同一连接上成对执行 COUNT。
+        // 结果会进计数缓存，只在主库上取，避免缓存副本的旧值
+        // 事务单元内的计数含未提交写入，不读也不写缓存
+        boolean cacheable = !ctx.tx().active();
+        CountCache.Key key = new CountCache.Key(where, new ArrayList<>(whereParams));
+        long epoch = counts.epoch();
+        Long known = cacheable ? counts.get(key) : null;
+        if (known != null) return page(list(pageSql, pageParams), known, offset);
+        String countSql = plan.count + where;
+        Object[] bound = pageParams;
+        long[] total = {-1L};
+        List<T> out;
+        if (ctx.dialect().windowCount()) {
+            String sql = plan.selectCounted + where + tail;
+            int totalCol = plan.columns.size() + 1;
+            out = jdbc(sql, c -> {
+                List<T> rows = new ArrayList<>();
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    bindAll(ps, bound);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            rows.add(fromRow(rs));
+                            total[0] = rs.getLong(totalCol);
+                        }
+                    }
+                }
+                // 页越界时窗口函数没有行可携带总数
+                if (rows.isEmpty()) total[0] = countOn(c, countSql, params);
+                return rows;
+            });
+        } else {
+            out = jdbc(countSql, c -> {
+                total[0] = countOn(c, countSql, params);
+                return listOn(c, pageSql, bound);
+            });
+        }
+        if (cacheable) counts.put(key, epoch, total[0]);
+        return page(out, total[0], offset);
+    }
+
+    private Page<T> page(List<T> items, long total, int offset) {
+        return new Page<>(items, (int) Math.min(Integer.MAX_VALUE, total), offset);
+    }
+
+    private T fromRow(ResultSet rs) throws SQLException {
+        T e = plan.entity.read(rs);
+        if (dirty != null) dirty.capture(e);
+        return e;
+    }
+
+    private static void bindAll(PreparedStatement ps, Object... params) throws SQLException {
+        if (params == null) return;
+        for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+    }
+
+    private List<T> list(String sql, Object... params) {
+        return read(sql, c -> listOn(c, sql, params));
+    }
+
+    private List<T> listOn(Connection c, String sql, Object... params) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            bindAll(ps, params);
             try (ResultSet rs = ps.executeQuery()) {
+                List<T> out = new ArrayList<>();
                 while (rs.next()) out.add(fromRow(rs));
+                return out;
             }
-            return new Page<>(out, out.size(), spec.offset());
-        } catch (Exception e) {
-            throw new RuntimeException(e);
         }
     }
 
-    private T fromRow(ResultSet rs) throws Exception {
-        T obj = type.getDeclaredConstructor().newInstance();
-        int idx = 1;
-        for (Field f : fields) {
-            Object v = rs.getObject(idx++);
-            if (v != null && f.getType() == java.time.Instant.class && v instanceof Timestamp)
-                v = ((Timestamp) v).toInstant();
-            f.set(obj, v);
+    private static long countOn(Connection c, String sql, Object... params) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            bindAll(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
         }
-        return obj;
     }
 
-    private Object toDb(Object v) {
-        if (v instanceof java.time.Instant) return Timestamp.from((java.time.Instant) v);
-        return v;
+    private Optional<T> one(String sql, Object... params) {
+        return read(sql, c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                bindAll(ps, params);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? Optional.of(fromRow(rs)) : Optional.<T>empty();
+                }
+            }
+        });
+    }
+
+    /** 单条写语句；完成后使计数与查询缓存失效 */
+    private int update(String sql, Object... params) {
+        try {
+            return jdbc(sql, c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    bindAll(ps, params);
+                    return ps.executeUpdate();
+                }
+            });
+        } finally {
+            written();
+        }
     }
 
     /**
      * 返回表中记录数
      */
     public long count() {
-        String sql = "SELECT COUNT(*) FROM `" + table + "`";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            if (rs.next()) return rs.getLong(1);
-            return 0L;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        if (resident != null) return resident.size();
+        flushPending();
+        if (ctx.tx().active()) return jdbc(plan.count, c -> countOn(c, plan.count));
+        long epoch = counts.epoch();
+        Long known = counts.get(CountCache.ALL);
+        if (known != null) return known;
+        long n = jdbc(plan.count, c -> countOn(c, plan.count));
+        counts.put(CountCache.ALL, epoch, n);
+        return n;
     }
 
     /**
      * 检查指定 ID 是否存在
      */
     public boolean existsById(ID id) {
-        String sql = "SELECT 1 FROM `" + table + "` WHERE `" + colName.get(idField) + "`=? LIMIT 1";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setObject(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        plan.requireId();
+        if (resident != null) return resident.contains(id);
+        if (behind != null) {
+            WriteBehindBuffer.Pending<T> p = behind.lookup(id);
+            if (p != null) return !p.deleted();
         }
+        if (cache != null) {
+            Optional<T> hit = cache.get(id);
+            if (hit != null) return hit.isPresent();
+        }
+        Object key = plan.id.converter().toDb(id);
+        return read(plan.existsById, c -> {
+            try (PreparedStatement ps = c.prepareStatement(plan.existsById)) {
+                ps.setObject(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        });
     }
 
     /**
      * 按指定列查找单条记录
      */
     public Optional<T> findOneWhere(String column, Object value) {
-        String cols = fields.stream().map(f -> "`" + colName.get(f) + "`").collect(Collectors.joining(","));
-        String sql = "SELECT " + cols + " FROM `" + table + "` WHERE `" + column + "`=? LIMIT 1";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setObject(1, value);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return Optional.of(fromRow(rs));
-                return Optional.empty();
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        EntityPlan.ColumnPlan col = plan.column(column).orElseThrow(() ->
+                new IllegalArgumentException("Unknown column '" + column + "' on " + plan.type.getName()));
+        if (resident != null) return resident.findOne(col, value);
+        flushPending();
+        String sql = plan.selectPrefix + " WHERE " + col.quoted() + "=? LIMIT 1";
+        return one(sql, col.converter().toDb(value));
     }
 
     /**
      * 按自定义 WHERE 条件查询多条记录
      */
     public List<T> findAllWhere(String where, Object... params) {
-        String cols = fields.stream().map(f -> "`" + colName.get(f) + "`").collect(Collectors.joining(","));
-        String sql = "SELECT " + cols + " FROM `" + table + "`";
+        flushPending();
+        String sql = plan.selectPrefix;
         if (where != null && !where.isBlank()) {
             sql += " WHERE " + where;
         }
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            if (params != null) {
-                for (int i = 0; i < params.length; i++) {
-                    ps.setObject(i + 1, params[i]);
+        return list(sql, params);
+    }
+
+    /**
+     * 清空表
+     */
+    public void deleteAll() {
+        if (behind != null) behind.clear();
+        if (cache != null) cache.clear();
+        if (dirty != null) dirty.clear();
+        if (resident != null) resident.clear();
+        writeOrJournal(() -> update(plan.deleteAll), () -> {
+            ctx.journal().append(plan.table, WriteJournal.DELETE_ALL, new Object[0]);
+            return 0;
+        });
+    }
+
+    /**
+     * 批量保存：同一连接、同一事务内按新增/更新分组，
+     * 每组按 batchSize 分批 executeBatch，新增批次一次取回全部自增键。
+     */
+    public void saveAll(Collection<T> entities) {
+        if (entities == null || entities.isEmpty()) return;
+        if (buffered()) {
+            for (T e : entities) save(e);
+            return;
+        }
+        writeAll(entities, List.of());
+    }
+
+    /** 单连接单事务写出一批保存与删除，供 saveAll 与延迟写落盘共用 */
+    private void writeAll(Collection<T> saves, Collection<Object> deletes) {
+        if (saves.isEmpty() && deletes.isEmpty()) return;
+        List<T> inserts = new ArrayList<>();
+        List<T> placed = new ArrayList<>();
+        List<T> upserted = new ArrayList<>();
+        List<Update<T>> updates = new ArrayList<>();
+        List<T> written = new ArrayList<>(saves.size());
+        Map<T, Object> versionsBefore = version == null ? Map.of() : new IdentityHashMap<>();
+        for (T e : saves) {
+            if (version != null) versionsBefore.putIfAbsent(e, version.access().get(e));
+            T row = e;
+            if (placed(e)) placed.add(row = initVersion(assignId(e)));
+            else if (isNew(idOf(e))) inserts.add(row = initVersion(e));
+            else if (upserts(e)) upserted.add(e);
+            else {
+                // 启用脏检查时只写变化的列，无变化的实体不写
+                long mask = changes(e);
+                if (mask != 0L) {
+                    long expected = version == null ? 0L : versionOf(e);
+                    if (version != null) {
+                        row = plan.entity.with(e, version, versionValue(expected + 1));
+                        if (mask != DirtyTracker.FULL) mask |= dirty.versionBit();
+                    }
+                    updates.add(new Update<>(row, mask, expected));
                 }
             }
-            try (ResultSet rs = ps.executeQuery()) {
-                List<T> out = new ArrayList<>();
-                while (rs.next()) out.add(fromRow(rs));
-                return out;
+            written.add(row);
+        }
+        try {
+            writeOrJournal(() -> jdbc(plan.insert, c -> writeOn(c, inserts, placed, upserted, updates, deletes)), () -> {
+                journalAll(inserts, placed, upserted, updates, deletes);
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            versionsBefore.forEach(this::restoreVersion);
+            if (ex instanceof OptimisticLockException ole) throw conflict(ole.id(), ole.expectedVersion());
+            // 批内无法定位是哪一行被他处插入
+            if (version != null && duplicateKey(ex)) throw conflict(null, 0L);
+            throw ex;
+        } finally {
+            written();
+        }
+        for (T e : written) remember(e);
+        if (cache != null) {
+            for (Object id : deletes) cache.invalidate(id);
+        }
+        if (dirty != null) {
+            for (T e : written) dirty.capture(e);
+            for (Object id : deletes) dirty.forget(id);
+        }
+        if (resident != null) {
+            for (Object id : deletes) resident.remove(id);
+        }
+    }
+
+    /** 按 writeOn 的顺序记日志；版本化实体不会走到这里 */
+    private void journalAll(List<T> inserts, List<T> placed, List<T> upserted, List<Update<T>> updates,
+                            Collection<Object> deletes) {
+        for (T e : inserts) journalSave(e);
+        for (T e : placed) journalSave(e);
+        for (T e : upserted) journalSave(e);
+        for (Update<T> u : updates) journalSave(u.entity());
+        for (Object id : deletes) {
+            ctx.journal().append(plan.table, WriteJournal.DELETE, new Object[]{plan.id.converter().toDb(id)});
+        }
+    }
+
+    /** 待写的一行更新：变更掩码与乐观锁期望版本 */
+    private record Update<E>(E entity, long mask, long expected) {}
+
+    /** 在给定连接上以单个事务写出，结束后恢复原 autoCommit */
+    private Void writeOn(Connection c, List<T> inserts, List<T> placed, List<T> upserted, List<Update<T>> updates,
+                         Collection<Object> deletes) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        List<Object> keys;
+        try {
+            keys = batchInsert(c, inserts);
+            batchAll(c, plan.insertAll, placed);
+            upsertAll(c, upserted);
+            batchUpdate(c, updates);
+            batchDelete(c, deletes);
+            c.commit();
+        } catch (SQLException | RuntimeException ex) {
+            c.rollback();
+            throw ex;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+        assignKeys(inserts, keys);
+        return null;
+    }
+
+    /** 批量插入，返回取回的自增键（与 rows 同序）；键在提交后才写回实体，回滚时实体保持无 ID */
+    private List<Object> batchInsert(Connection c, List<T> rows) throws SQLException {
+        if (rows.isEmpty()) return List.of();
+        EntityPlan.ColumnPlan id = plan.id;
+        // 不可变实体无法回填键，此时不取回自增键
+        boolean fetchKeys = id != null && id.auto() && plan.entity.mutable();
+        List<Object> keys = fetchKeys ? new ArrayList<>(rows.size()) : List.of();
+        try (PreparedStatement ps = fetchKeys
+                ? c.prepareStatement(plan.insert, Statement.RETURN_GENERATED_KEYS)
+                : c.prepareStatement(plan.insert)) {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<T> chunk = rows.subList(from, Math.min(rows.size(), from + batchSize));
+                for (T e : chunk) {
+                    bindWritable(ps, e);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                if (fetchKeys) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        for (int n = 0; n < chunk.size() && rs.next(); n++) keys.add(id.converter().fromDb(rs.getObject(1)));
+                    }
+                }
             }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
         }
+        return keys;
     }
 
     /**
-     * 清空表
+     * 提交后把自增键写回实体。事务单元内此时尚未真正提交，单元回滚时把这些实体的 ID 复位，
+     * 否则之后的保存会当作更新去匹配一条不存在的行。
      */
-    public void deleteAll() {
-        String sql = "DELETE FROM `" + table + "`";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    private void assignKeys(List<T> rows, List<Object> keys) {
+        if (keys.isEmpty()) return;
+        EntityPlan.ColumnPlan id = plan.id;
+        List<T> assigned = rows.subList(0, keys.size());
+        for (int i = 0; i < keys.size(); i++) id.access().set(assigned.get(i), keys.get(i));
+        UnitOfWork uow = ctx.tx().joined(ctx.ds());
+        if (uow != null) {
+            Class<?> type = id.field().getType();
+            Object unset = type.isPrimitive() ? IdGenerators.coerce(0L, type) : null;
+            uow.enlist(new Object(), () -> {
+                for (T e : assigned) id.access().set(e, unset);
+            });
+        }
+    }
+
+    /** 绑定全部列（含 ID）的批量语句：带 ID 的插入与 upsert */
+    private void batchAll(Connection c, String sql, List<T> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                for (T e : rows.subList(from, Math.min(rows.size(), from + batchSize))) {
+                    bindColumns(ps, e);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    private void upsertAll(Connection c, List<T> rows) throws SQLException {
+        if (upsert != null) {
+            batchAll(c, upsert, rows);
+            return;
+        }
+        for (T e : rows) upsertOn(c, e);
+    }
+
+    /** 按 ID 写入整行：有 upsert 语句时单语句完成，否则先按 ID 更新，未命中再带 ID 插入 */
+    private int upsertOn(Connection c, T e) throws SQLException {
+        if (upsert != null) {
+            try (PreparedStatement ps = c.prepareStatement(upsert)) {
+                bindColumns(ps, e);
+                return ps.executeUpdate();
+            }
+        }
+        Object idVal = plan.id.converter().toDb(idOf(e));
+        if (plan.update != null) {
+            try (PreparedStatement ps = c.prepareStatement(plan.update)) {
+                ps.setObject(bindUpdatable(ps, e), idVal);
+                int n = ps.executeUpdate();
+                if (n > 0) return n;
+            }
+        } else {
+            // 只有计数列：行已存在时无列可写
+            try (PreparedStatement ps = c.prepareStatement(plan.existsById)) {
+                ps.setObject(1, idVal);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) return 0;
+                }
+            }
+        }
+        try (PreparedStatement ps = c.prepareStatement(plan.insertAll)) {
+            bindColumns(ps, e);
+            return ps.executeUpdate();
         }
     }
 
+    private void batchUpdate(Connection c, List<Update<T>> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        if (dirty == null) {
+            batchUpdate(c, rows, DirtyTracker.FULL);
+            return;
+        }
+        // 按变更掩码分组，每组一条语句批量执行
+        Map<Long, List<Update<T>>> byMask = new LinkedHashMap<>();
+        for (Update<T> u : rows) byMask.computeIfAbsent(u.mask(), k -> new ArrayList<>()).add(u);
+        for (Map.Entry<Long, List<Update<T>>> en : byMask.entrySet()) batchUpdate(c, en.getValue(), en.getKey());
+    }
+
+    private void batchUpdate(Connection c, List<Update<T>> rows, long mask) throws SQLException {
+        EntityPlan.ColumnPlan id = plan.requireId();
+        String sql = dirty == null ? plan.update : dirty.updateSql(mask);
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<Update<T>> chunk = rows.subList(from, Math.min(rows.size(), from + batchSize));
+                for (Update<T> u : chunk) {
+                    int i = dirty == null ? bindUpdatable(ps, u.entity()) : dirty.bind(ps, u.entity(), mask);
+                    id.access().bind(ps, i++, u.entity());
+                    if (version != null) ps.setLong(i, u.expected());
+                    ps.addBatch();
+                }
+                int[] n = ps.executeBatch();
+                if (version == null) continue;
+                // 未命中的行即冲突；驱动返回 SUCCESS_NO_INFO 时无法判断，视为成功
+                for (int k = 0; k < n.length && k < chunk.size(); k++) {
+                    if (n[k] == 0) {
+                        Update<T> u = chunk.get(k);
+                        throw new OptimisticLockException(plan.type, idOf(u.entity()), u.expected());
+                    }
+                }
+            }
+        }
+    }
+
+    private void batchDelete(Connection c, Collection<Object> ids) throws SQLException {
+        if (ids.isEmpty()) return;
+        EntityPlan.ColumnPlan id = plan.requireId();
+        try (PreparedStatement ps = c.prepareStatement(plan.deleteById)) {
+            int n = 0;
+            for (Object v : ids) {
+                ps.setObject(1, id.converter().toDb(v));
+                ps.addBatch();
+                if (++n % batchSize == 0) ps.executeBatch();
+            }
+            if (n % batchSize != 0) ps.executeBatch();
+        }
+    }
+
+    /** 延迟写模式下，查询前先落盘待写集，保证读到自己的写入 */
+    private void flushPending() {
+        if (behind != null && !behind.isEmpty()) behind.drain();
+    }
+
     /**
-     * 批量保存（事务插入或更新）
-     *
-     * @return
+     * 运行指标快照：缓存命中/未命中/淘汰、待写数量等
      */
-    public void saveAll(Collection<T> entities) {
-        if (entities == null || entities.isEmpty()) return;
-        try (Connection c = ds.getConnection()) {
-            c.setAutoCommit(false);
-            try {
-                for (T e : entities) {
-                    save(e);
+    public Map<String, Long> metrics() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        if (cache != null) m.putAll(cache.stats());
+        m.putAll(counts.stats());
+        if (dirty != null) m.putAll(dirty.stats());
+        if (counters != null) m.putAll(counters.stats());
+        if (resident != null) m.putAll(resident.stats());
+        if (queries != null) m.putAll(queries.stats());
+        m.put("query.shapes", (long) shapes.size());
+        if (behind != null) m.put("writeBehind.pending", (long) behind.size());
+        return m;
+    }
+
+    @Override
+    public void flush() {
+        if (behind != null) behind.drain();
+        if (counters != null) counters.drain();
+    }
+
+    @Override
+    public void close() {
+        if (behind != null) behind.close();
+        if (counters != null) counters.close();
+    }
+
+    // —— 计数列 —— //
+
+    @Override
+    public void increment(ID id, String column, long delta) {
+        EntityPlan.CounterSql cs = counter(column);
+        if (delta == 0L) return;
+        CounterBuffer.Key key = new CounterBuffer.Key(id, cs.column().name());
+        counters.add(key, delta);
+        if (cache != null) cache.invalidate(id);
+    }
+
+    @Override
+    public long readCounter(ID id, String column) {
+        EntityPlan.CounterSql cs = counter(column);
+        Object key = plan.id.converter().toDb(id);
+        return counters.read(new CounterBuffer.Key(id, cs.column().name()), () -> jdbc(cs.read(), c -> {
+            try (PreparedStatement ps = c.prepareStatement(cs.read())) {
+                ps.setObject(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
                 }
-                c.commit();
-            } catch (Exception ex) {
-                c.rollback();
-                throw ex;
-            } finally {
-                c.setAutoCommit(true);
             }
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+        }));
+    }
+
+    private EntityPlan.CounterSql counter(String column) {
+        EntityPlan.CounterSql cs = plan.counters.get(column);
+        if (cs == null) {
+            throw new IllegalArgumentException("Not a @Counter column '" + column + "' on " + plan.type.getName());
+        }
+        return cs;
+    }
+
+    /** 一个事务内按列分组批量执行 c = c + ?；行不存在时该增量不生效 */
+    private void writeCounters(Map<CounterBuffer.Key, Long> deltas) {
+        Map<String, List<Map.Entry<CounterBuffer.Key, Long>>> byColumn = new LinkedHashMap<>();
+        for (Map.Entry<CounterBuffer.Key, Long> en : deltas.entrySet()) {
+            byColumn.computeIfAbsent(en.getKey().column(), k -> new ArrayList<>()).add(en);
+        }
+        EntityPlan.ColumnPlan id = plan.requireId();
+        try {
+            String first = plan.counters.get(byColumn.keySet().iterator().next()).increment();
+            jdbc(first, c -> {
+                boolean autoCommit = c.getAutoCommit();
+                c.setAutoCommit(false);
+                try {
+                    for (Map.Entry<String, List<Map.Entry<CounterBuffer.Key, Long>>> col : byColumn.entrySet()) {
+                        try (PreparedStatement ps = c.prepareStatement(plan.counters.get(col.getKey()).increment())) {
+                            int n = 0;
+                            for (Map.Entry<CounterBuffer.Key, Long> en : col.getValue()) {
+                                ps.setLong(1, en.getValue());
+                                ps.setObject(2, id.converter().toDb(en.getKey().id()));
+                                ps.addBatch();
+                                if (++n % batchSize == 0) ps.executeBatch();
+                            }
+                            if (n % batchSize != 0) ps.executeBatch();
+                        }
+                    }
+                    c.commit();
+                } catch (SQLException | RuntimeException ex) {
+                    c.rollback();
+                    throw ex;
+                } finally {
+                    c.setAutoCommit(autoCommit);
+                }
+                return null;
+            });
+        } finally {
+            written();
+        }
+        if (cache != null) {
+            for (CounterBuffer.Key k : deltas.keySet()) cache.invalidate(k.id());
+        }
+        if (resident != null) {
+            // 常驻副本按已提交的增量就地累加，不回查数据库
+            for (Map.Entry<CounterBuffer.Key, Long> en : deltas.entrySet()) {
+                Optional<T> cur = resident.get(en.getKey().id());
+                if (cur.isEmpty()) continue;
+                EntityPlan.ColumnPlan col = plan.counters.get(en.getKey().column()).column();
+                Object v = col.access().get(cur.get());
+                long next = (v == null ? 0L : ((Number) v).longValue()) + en.getValue();
+                resident.put(plan.entity.with(cur.get(), col, col.converter().fromDb(next)));
+            }
         }
     }
 
@@ -298,12 +1189,82 @@ public final class RepositoryImpl<T, ID> implements Repository<T, ID> {
      * 返回流式结果（注意使用 try-with-resources 时消费完成）
      */
     public Stream<T> streamAll() {
-        String cols = fields.stream().map(f -> "`" + colName.get(f) + "`").collect(Collectors.joining(","));
-        String sql = "SELECT " + cols + " FROM `" + table + "`";
+        if (resident != null) return resident.stream();
+        return openStream(0);
+    }
+
+    /**
+     * 以只进只读游标流式读取，MySQL 下逐行传输而不缓冲整表
+     */
+    @Override
+    public Stream<T> streamAll(int fetchSize) {
+        if (resident != null) return resident.stream();
+        return openStream(Math.max(1, fetchSize));
+    }
+
+    /**
+     * 按主键键集分页：首页 {@code ORDER BY id LIMIT n}，其后 {@code WHERE id > last}，
+     * 每页耗时与页深无关，任一时刻只持有一页实体。
+     */
+    @Override
+    public void forEachBatch(int batchSize, Consumer<List<T>> consumer) {
+        EntityPlan.ColumnPlan id = plan.requireId();
+        int size = Math.max(1, batchSize);
+        flushPending();
+        List<T> page = list(plan.keysetFirst, size);
+        while (!page.isEmpty()) {
+            consumer.accept(page);
+            if (page.size() < size) break;
+            Object last = id.converter().toDb(id.access().get(page.get(page.size() - 1)));
+            page = list(plan.keysetNext, last, size);
+        }
+    }
+
+    @Override
+    public List<T> findAfter(ID afterId, int limit) {
+        plan.requireId();
+        flushPending();
+        int size = Math.max(1, limit);
+        return afterId == null
+                ? list(plan.keysetFirst, size)
+                : list(plan.keysetNext, plan.id.converter().toDb(afterId), size);
+    }
+
+    /** 流式查询可分流时优先用副本，副本连不上则暂停它并改用主库 */
+    private Connection streamConnection() throws SQLException {
+        DataSourceGroup.Replica r = replica();
+        if (r != null) {
+            try {
+                return r.ds().getConnection();
+            } catch (SQLException e) {
+                if (!CircuitBreaker.unavailable(e)) throw e;
+                ctx.source().down(r);
+            }
+        }
+        return connect();
+    }
+
+    /**
+     * fetchSize 为 0 时使用驱动默认抓取方式。
+     * 事务单元内拒绝：流会占住单元的连接直到关闭（MySQL 逐行传输期间该连接不能再执行语句），
+     * 关闭时也不能归还单元的连接；单元内请改用 {@link #forEachBatch} 或 {@link #findAfter}。
+     */
+    private Stream<T> openStream(int fetchSize) {
+        if (ctx.tx().active()) {
+            throw new IllegalStateException("streamAll cannot run inside a unit of work on " + plan.table
+                    + "; use forEachBatch or findAfter instead");
+        }
+        flushPending();
+        long token = ctx.guard().enter(plan.selectAll);
+        Connection c = null;
+        PreparedStatement ps = null;
         try {
-            Connection c = ds.getConnection();
-            PreparedStatement ps = c.prepareStatement(sql);
+            c = streamConnection();
+            ps = c.prepareStatement(plan.selectAll, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) ctx.dialect().streaming(ps, fetchSize);
             ResultSet rs = ps.executeQuery();
+            Connection conn = c;
+            PreparedStatement stmt = ps;
             Iterator<T> iterator = new Iterator<T>() {
                 boolean hasNext = false;
                 boolean computed = false;
@@ -340,14 +1301,24 @@ public final class RepositoryImpl<T, ID> implements Repository<T, ID> {
                             rs.close();
                         } catch (SQLException ignored) {}
                         try {
-                            ps.close();
+                            stmt.close();
                         } catch (SQLException ignored) {}
                         try {
-                            c.close();
+                            conn.close();
                         } catch (SQLException ignored) {}
                     });
         } catch (SQLException e) {
+            try { if (ps != null) ps.close(); } catch (SQLException ignored) {}
+            try { if (c != null) c.close(); } catch (SQLException ignored) {}
             throw new RuntimeException(e);
+        } finally {
+            // 仅计入打开游标的耗时，逐行消费不计
+            ctx.guard().exit(token, plan.selectAll);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public String toString() {
+        return plan.toString();
+    }
+}
@@ -0,0 +1,383 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.dto.Criteria;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 常驻内存的整表副本。
+ * <p>
+ * 打开仓库时载入全表，按 ID 存放实体；每个 {@code @Index} 维护一份哈希索引，单列且可比较的索引另维护有序索引。
+ * 写入在写锁内同时更新行与索引；读取无锁，索引只用于缩小候选集，最终仍以行的当前值逐条校验条件，
+ * 因此并发写入期间读到的结果不会包含不满足条件的行。
+ * <p>
+ * 字符串的比较、LIKE 与排序跟随后端的默认排序规则：MySQL（*_ci）不区分大小写，H2 区分。
+ * 与 MySQL 仍有的差异：不忽略重音（utf8mb4_0900_ai_ci 下 é 与 e 相等），比较时不忽略尾部空格。
+ */
+final class ResidentTable<T> {
+
+    /** 哈希索引不接受 null 键 */
+    private static final Object NULL = new Object();
+
+    /** 一次内存查询的结果：total 为分页前的匹配数 */
+    record Result<T>(List<T> items, int total) {}
+
+    private final class Idx {
+        final EntityPlan.IndexPlan plan;
+        final Map<Object, Set<Object>> hash = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<Object, Set<Object>> sorted;   // 仅单列可比较类型
+
+        Idx(EntityPlan.IndexPlan plan) {
+            this.plan = plan;
+            boolean single = plan.columns().size() == 1;
+            this.sorted = single && Comparable.class.isAssignableFrom(boxed(plan.columns().get(0).field().getType()))
+                    ? new ConcurrentSkipListMap<>(ResidentTable.this::compare) : null;
+        }
+
+        Object keyOf(T e) {
+            if (plan.columns().size() == 1) return hashKey(valueOf(plan.columns().get(0), e));
+            List<Object> k = new ArrayList<>(plan.columns().size());
+            for (EntityPlan.ColumnPlan c : plan.columns()) k.add(hashKey(valueOf(c, e)));
+            return k;
+        }
+
+        void add(Object key, Object id) {
+            hash.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+            if (sorted != null && key != NULL) sorted.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+
+        void remove(Object key, Object id) {
+            drop(hash, key, id);
+            if (sorted != null && key != NULL) drop(sorted, key, id);
+        }
+    }
+
+    private record Cond(EntityPlan.ColumnPlan col, Criteria.Op op, List<Object> values, Pattern like) {}
+
+    private final EntityPlan<T> plan;
+    private final boolean ignoreCase;     // 字符串比较不区分大小写
+    private final Map<Object, T> rows = new ConcurrentHashMap<>();
+    private final List<Idx> indexes = new ArrayList<>();
+    private final Map<String, Idx> singleByColumn = new HashMap<>();
+    private final Map<Object, Object[]> keysById = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    private final LongAdder indexedReads = new LongAdder();
+    private final LongAdder scans = new LongAdder();
+
+    ResidentTable(EntityPlan<T> plan, boolean ignoreCase) {
+        this.plan = plan;
+        this.ignoreCase = ignoreCase;
+        for (EntityPlan.IndexPlan ix : plan.indexes) {
+            Idx idx = new Idx(ix);
+            indexes.add(idx);
+            if (ix.columns().size() == 1) singleByColumn.putIfAbsent(ix.columns().get(0).name(), idx);
+        }
+    }
+
+    void load(Collection<T> all) {
+        synchronized (writeLock) {
+            clear();
+            for (T e : all) put(e);
+        }
+    }
+
+    Optional<T> get(Object id) {
+        return Optional.ofNullable(rows.get(norm(plan.id, id)));
+    }
+
+    boolean contains(Object id) {
+        return rows.containsKey(norm(plan.id, id));
+    }
+
+    void put(T e) {
+        Object id = norm(plan.id, plan.id.access().get(e));
+        if (id == null) return;
+        synchronized (writeLock) {
+            unindex(id);
+            rows.put(id, e);
+            Object[] keys = new Object[indexes.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = indexes.get(i).keyOf(e);
+                indexes.get(i).add(keys[i], id);
+            }
+            keysById.put(id, keys);
+        }
+    }
+
+    void remove(Object id) {
+        Object k = norm(plan.id, id);
+        if (k == null) return;
+        synchronized (writeLock) {
+            unindex(k);
+            rows.remove(k);
+        }
+    }
+
+    void clear() {
+        synchronized (writeLock) {
+            rows.clear();
+            keysById.clear();
+            for (Idx idx : indexes) {
+                idx.hash.clear();
+                if (idx.sorted != null) idx.sorted.clear();
+            }
+        }
+    }
+
+    int size() {
+        return rows.size();
+    }
+
+    List<T> all() {
+        return new ArrayList<>(rows.values());
+    }
+
+    Stream<T> stream() {
+        return all().stream();
+    }
+
+    /** 单列等值查找，列上有索引时走哈希索引 */
+    Optional<T> findOne(EntityPlan.ColumnPlan col, Object value) {
+        return query(Criteria.of().eq(col.name(), value).limit(1)).items().stream().findFirst();
+    }
+
+    Result<T> query(Criteria c) {
+        List<Cond> conds = new ArrayList<>();
+        for (Criteria.Condition cond : c.conditions()) conds.add(compile(cond));
+
+        Collection<T> source = candidates(conds);
+        List<T> matched = new ArrayList<>();
+        for (T e : source) {
+            if (e != null && matches(e, conds)) matched.add(e);
+        }
+        if (!c.orders().isEmpty()) matched.sort(comparator(c.orders()));
+        int total = matched.size();
+        int from = Math.min(total, Math.max(0, c.offset()));
+        int to = c.limit() > 0 ? Math.min(total, from + c.limit()) : total;
+        return new Result<>(new ArrayList<>(matched.subList(from, to)), total);
+    }
+
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        long keys = 0, members = 0;
+        for (Idx idx : indexes) {
+            keys += idx.hash.size() + (idx.sorted == null ? 0 : idx.sorted.size());
+            for (Set<Object> s : idx.hash.values()) members += s.size();
+        }
+        long bytes = 0;
+        for (T e : rows.values()) {
+            bytes += 48;                                    // 表节点与对象头
+            for (EntityPlan.ColumnPlan col : plan.columns) bytes += estimate(col.access().get(e));
+        }
+        bytes += keys * 96 + members * 40;                  // 索引键、键集与成员节点
+        m.put("resident.rows", (long) rows.size());
+        m.put("resident.indexes", (long) indexes.size());
+        m.put("resident.indexKeys", keys);
+        m.put("resident.bytes", bytes);
+        m.put("resident.indexedReads", indexedReads.sum());
+        m.put("resident.scans", scans.sum());
+        return m;
+    }
+
+    // —— 内部 —— //
+
+    private void unindex(Object id) {
+        Object[] old = keysById.remove(id);
+        if (old == null) return;
+        for (int i = 0; i < old.length; i++) indexes.get(i).remove(old[i], id);
+    }
+
+    private Cond compile(Criteria.Condition cond) {
+        EntityPlan.ColumnPlan col = plan.column(cond.column()).orElseThrow(() ->
+                new IllegalArgumentException("Unknown column '" + cond.column() + "' on " + plan.type.getName()));
+        Criteria.Op op = cond.op();
+        if (op == Criteria.Op.EQ && cond.values().get(0) == null) op = Criteria.Op.IS_NULL;
+        if (op == Criteria.Op.NE && cond.values().get(0) == null) op = Criteria.Op.NOT_NULL;
+        List<Object> vals = new ArrayList<>(cond.values().size());
+        for (Object v : cond.values()) vals.add(op == Criteria.Op.LIKE ? v : norm(col, v));
+        Pattern like = op == Criteria.Op.LIKE ? likePattern(String.valueOf(cond.values().get(0)), ignoreCase) : null;
+        return new Cond(col, op, vals, like);
+    }
+
+    /** 选出候选行：主键等值 → 哈希索引（EQ/IN） → 有序索引（范围） → 全表 */
+    private Collection<T> candidates(List<Cond> conds) {
+        for (Cond c : conds) {
+            if (c.col() == plan.id && c.op() == Criteria.Op.EQ) {
+                indexedReads.increment();
+                T e = rows.get(c.values().get(0));
+                return e == null ? List.of() : List.of(e);
+            }
+        }
+        for (Cond c : conds) {
+            Idx idx = singleByColumn.get(c.col().name());
+            if (idx == null) continue;
+            if (c.op() == Criteria.Op.EQ || c.op() == Criteria.Op.IS_NULL || c.op() == Criteria.Op.IN) {
+                indexedReads.increment();
+                List<Object> keys = c.op() == Criteria.Op.IS_NULL ? Collections.singletonList(null) : c.values();
+                Set<Object> ids = new HashSet<>();
+                for (Object k : keys) ids.addAll(idx.hash.getOrDefault(hashKey(k), Set.of()));
+                return byIds(ids);
+            }
+        }
+        for (Cond c : conds) {
+            Idx idx = singleByColumn.get(c.col().name());
+            if (idx == null || idx.sorted == null || c.values().isEmpty() || c.values().get(0) == null) continue;
+            Object bound = c.values().get(0);
+            Map<Object, Set<Object>> range = switch (c.op()) {
+                case LT -> idx.sorted.headMap(bound, false);
+                case LE -> idx.sorted.headMap(bound, true);
+                case GT -> idx.sorted.tailMap(bound, false);
+                case GE -> idx.sorted.tailMap(bound, true);
+                default -> null;
+            };
+            if (range == null) continue;
+            indexedReads.increment();
+            Set<Object> ids = new HashSet<>();
+            for (Set<Object> s : range.values()) ids.addAll(s);
+            return byIds(ids);
+        }
+        scans.increment();
+        return rows.values();
+    }
+
+    private List<T> byIds(Collection<Object> ids) {
+        List<T> out = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            T e = rows.get(id);
+            if (e != null) out.add(e);
+        }
+        return out;
+    }
+
+    private boolean matches(Object e, List<Cond> conds) {
+        for (Cond c : conds) {
+            Object v = valueOf(c.col(), e);
+            boolean ok = switch (c.op()) {
+                case IS_NULL -> v == null;
+                case NOT_NULL -> v != null;
+                case EQ -> v != null && compare(v, c.values().get(0)) == 0;
+                case NE -> v != null && compare(v, c.values().get(0)) != 0;
+                case LT -> v != null && compare(v, c.values().get(0)) < 0;
+                case LE -> v != null && compare(v, c.values().get(0)) <= 0;
+                case GT -> v != null && compare(v, c.values().get(0)) > 0;
+                case GE -> v != null && compare(v, c.values().get(0)) >= 0;
+                case LIKE -> v != null && c.like().matcher(String.valueOf(v)).matches();
+                case IN -> v != null && c.values().stream().anyMatch(x -> x != null && compare(v, x) == 0);
+            };
+            if (!ok) return false;
+        }
+        return true;
+    }
+
+    private Comparator<T> comparator(List<Criteria.Order> orders) {
+        Comparator<T> cmp = null;
+        for (Criteria.Order o : orders) {
+            EntityPlan.ColumnPlan col = plan.column(o.column()).orElseThrow(() ->
+                    new IllegalArgumentException("Unknown column '" + o.column() + "' on " + plan.type.getName()));
+            // 与 H2/MySQL 一致：升序时 NULL 在前
+            Comparator<T> one = (a, b) -> {
+                Object x = valueOf(col, a), y = valueOf(col, b);
+                if (x == null || y == null) return x == y ? 0 : (x == null ? -1 : 1);
+                return compare(x, y);
+            };
+            if (!o.ascending()) one = one.reversed();
+            cmp = cmp == null ? one : cmp.thenComparing(one);
+        }
+        return cmp;
+    }
+
+    private static Object valueOf(EntityPlan.ColumnPlan col, Object e) {
+        return col.access().get(e);
+    }
+
+    /** 参数值规整为实体字段的类型，例如 int 参数对 long 列、Timestamp 对 Instant 列 */
+    private static Object norm(EntityPlan.ColumnPlan col, Object v) {
+        return v == null ? null : col.converter().fromDb(col.converter().toDb(v));
+    }
+
+    /** 不区分大小写时字符串与枚举名按 {@link String#CASE_INSENSITIVE_ORDER} 的规则折叠，与 compare 的相等一致 */
+    private Object hashKey(Object v) {
+        if (v == null) return NULL;
+        if (!ignoreCase) return v;
+        if (v instanceof String s) return fold(s);
+        return v instanceof Enum<?> e ? fold(e.name()) : v;
+    }
+
+    private static String fold(String s) {
+        char[] out = new char[s.length()];
+        for (int i = 0; i < out.length; i++) out[i] = Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+        return new String(out);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int compare(Object a, Object b) {
+        if (a instanceof Number x && b instanceof Number y) {
+            if (isIntegral(x) && isIntegral(y)) return Long.compare(x.longValue(), y.longValue());
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        if (a instanceof String x && b instanceof String y) {
+            return ignoreCase ? String.CASE_INSENSITIVE_ORDER.compare(x, y) : x.compareTo(y);
+        }
+        // 枚举按名称存为 VARCHAR，排序与范围条件跟库中一样按名称比较，而不是按声明顺序
+        if (a instanceof Enum<?> x && b instanceof Enum<?> y) {
+            return ignoreCase ? String.CASE_INSENSITIVE_ORDER.compare(x.name(), y.name()) : x.name().compareTo(y.name());
+        }
+        if (a instanceof Comparable ca && a.getClass() == b.getClass()) return ca.compareTo(b);
+        String x = String.valueOf(a), y = String.valueOf(b);
+        return ignoreCase ? String.CASE_INSENSITIVE_ORDER.compare(x, y) : x.compareTo(y);
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    /** SQL LIKE → 正则：% 任意串，_ 单个字符；大小写规则同 compare */
+    private static Pattern likePattern(String like, boolean ignoreCase) {
+        StringBuilder re = new StringBuilder();
+        StringBuilder lit = new StringBuilder();
+        for (char ch : like.toCharArray()) {
+            if (ch == '%' || ch == '_') {
+                if (lit.length() > 0) re.append(Pattern.quote(lit.toString()));
+                lit.setLength(0);
+                re.append(ch == '%' ? ".*" : ".");
+            } else {
+                lit.append(ch);
+            }
+        }
+        if (lit.length() > 0) re.append(Pattern.quote(lit.toString()));
+        int flags = Pattern.DOTALL | (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+        return Pattern.compile(re.toString(), flags);
+    }
+
+    private static void drop(Map<Object, Set<Object>> index, Object key, Object id) {
+        index.computeIfPresent(key, (k, s) -> {
+            s.remove(id);
+            return s.isEmpty() ? null : s;
+        });
+    }
+
+    private static long estimate(Object v) {
+        if (v == null) return 8;
+        if (v instanceof String s) return 40 + 2L * s.length();
+        if (v instanceof Number || v instanceof Boolean) return 16;
+        if (v instanceof Instant) return 24;
+        return 32;
+    }
+
+    private static Class<?> boxed(Class<?> t) {
+        if (!t.isPrimitive()) return t;
+        if (t == int.class) return Integer.class;
+        if (t == long.class) return Long.class;
+        if (t == double.class) return Double.class;
+        if (t == float.class) return Float.class;
+        if (t == boolean.class) return Boolean.class;
+        return Object.class;
+    }
+}
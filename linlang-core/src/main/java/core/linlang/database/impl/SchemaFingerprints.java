@@ -0,0 +1,95 @@
+package core.linlang.database.impl;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * 一个数据源上各实体表结构的指纹，存于 {@code linlang_schema} 表。
+ * <p>
+ * 指纹是建表语句与索引 DDL 的 SHA-256：列、类型、约束或索引有任何变化都会改变它。
+ * 首次使用时一次查询读入全部指纹，指纹一致的实体启动时不再执行 DDL 与元数据查询。
+ * 库外删改了表时，删除该表在 linlang_schema 中的行即可在下次启动时重新同步。
+ */
+final class SchemaFingerprints {
+
+    static final String TABLE = "linlang_schema";
+
+    private static final String CREATE = "CREATE TABLE IF NOT EXISTS `" + TABLE + "` ("
+            + "`table_name` VARCHAR(128) NOT NULL PRIMARY KEY, "
+            + "`fingerprint` VARCHAR(64) NOT NULL, "
+            + "`updated_at` TIMESTAMP NOT NULL)";
+    private static final String SELECT = "SELECT `table_name`, `fingerprint` FROM `" + TABLE + "`";
+    private static final String UPDATE = "UPDATE `" + TABLE + "` SET `fingerprint`=?, `updated_at`=? WHERE `table_name`=?";
+    private static final String INSERT = "INSERT INTO `" + TABLE + "` (`table_name`, `fingerprint`, `updated_at`) VALUES (?,?,?)";
+
+    private final DataSource ds;
+    private Map<String, String> known;   // 首次使用时加载
+
+    SchemaFingerprints(DataSource ds) {
+        this.ds = ds;
+    }
+
+    /** 建表语句与按方言生成的索引 DDL 的摘要 */
+    static String of(EntityPlan<?> plan, SqlDialect dialect) {
+        StringBuilder sb = new StringBuilder("v1\n").append(plan.createTable);
+        for (EntityPlan.IndexPlan ix : plan.indexes) sb.append('\n').append(ix.ddl(plan.table, dialect));
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(h);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** 库中记录的指纹是否与 fingerprint 一致 */
+    synchronized boolean matches(String table, String fingerprint) throws SQLException {
+        return fingerprint.equals(known().get(table));
+    }
+
+    /** 结构同步完成后记录新指纹 */
+    synchronized void record(Connection c, String table, String fingerprint) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int n;
+        try (PreparedStatement ps = c.prepareStatement(UPDATE)) {
+            ps.setString(1, fingerprint);
+            ps.setTimestamp(2, now);
+            ps.setString(3, table);
+            n = ps.executeUpdate();
+        }
+        if (n == 0) {
+            try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+                ps.setString(1, table);
+                ps.setString(2, fingerprint);
+                ps.setTimestamp(3, now);
+                ps.executeUpdate();
+            }
+        }
+        known().put(table, fingerprint);
+    }
+
+    private Map<String, String> known() throws SQLException {
+        if (known != null) return known;
+        Map<String, String> m = new HashMap<>();
+        try (Connection c = ds.getConnection()) {
+            try (Statement s = c.createStatement()) {
+                s.execute(CREATE);
+            }
+            try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery(SELECT)) {
+                while (rs.next()) m.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        known = m;
+        return m;
+    }
+}
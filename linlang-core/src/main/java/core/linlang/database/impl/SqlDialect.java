@@ -0,0 +1,116 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.types.DbType;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * 方言差异点。仅收录后端行为确实不同之处，公共 SQL 仍由 {@link EntityPlan} 预拼。
+ */
+enum SqlDialect {
+    H2(false, true),
+    MYSQL(true, true),
+    /** MySQL 5.7 及更早：不支持窗口函数 */
+    MYSQL_57(true, false);
+
+    /** utf8mb4 下不超过 767 字节索引上限的字符数 */
+    private static final int INDEX_PREFIX = 191;
+
+    private final boolean mysql;
+    private final boolean windowCount;
+
+    SqlDialect(boolean mysql, boolean windowCount) {
+        this.mysql = mysql;
+        this.windowCount = windowCount;
+    }
+
+    /** 按服务端版本确定方言；取不到版本时按不支持窗口函数处理 */
+    static SqlDialect detect(DbType type, DataSource ds) {
+        if (type != DbType.MYSQL) return H2;
+        try (Connection c = ds.getConnection()) {
+            return c.getMetaData().getDatabaseMajorVersion() >= 8 ? MYSQL : MYSQL_57;
+        } catch (SQLException e) {
+            return MYSQL_57;
+        }
+    }
+
+    /** 默认排序规则下字符串比较是否不区分大小写（MySQL 的 *_ci 是，H2 否） */
+    boolean caseInsensitive() {
+        return mysql;
+    }
+
+    /** 是否支持 {@code COUNT(*) OVER()}，可在分页查询中一并取回总数 */
+    boolean windowCount() {
+        return windowCount;
+    }
+
+    /**
+     * 为只进只读的查询设置流式抓取。
+     * Connector/J 仅在 fetchSize 为 Integer.MIN_VALUE 时逐行流式读取，否则整表缓冲到内存。
+     */
+    void streaming(PreparedStatement ps, int fetchSize) throws SQLException {
+        ps.setFetchSize(mysql ? Integer.MIN_VALUE : Math.max(1, fetchSize));
+    }
+
+    /**
+     * 单语句插入或更新，参数按 {@code plan.columns} 顺序（含 ID）。行已存在时只更新 {@code plan.updatable}，
+     * 计数列保留库中已累加的值。
+     * H2 用 {@code MERGE ... KEY(id)}，有计数列时改用标准 {@code MERGE ... USING} 以排除它们；
+     * MySQL 用 {@code ON DUPLICATE KEY UPDATE}（沿用 VALUES() 以兼容 5.7）。
+     * 该子句在任一唯一键冲突时都会触发，表上另有唯一索引时会把别的行当成同一行更新，
+     * 此时返回 null，由调用方按 ID 先更新、未命中再插入。
+     */
+    String upsert(EntityPlan<?> plan) {
+        EntityPlan.ColumnPlan id = plan.requireId();
+        if (mysql && plan.indexes.stream().anyMatch(EntityPlan.IndexPlan::unique)) return null;
+        String q = "`" + plan.table + "`";
+        String cols = plan.columns.stream().map(EntityPlan.ColumnPlan::quoted).collect(Collectors.joining(","));
+        String qs = plan.columns.stream().map(c -> "?").collect(Collectors.joining(","));
+        if (!mysql && plan.counterColumns.isEmpty()) {
+            return "MERGE INTO " + q + "(" + cols + ") KEY(" + id.quoted() + ") VALUES(" + qs + ")";
+        }
+        if (!mysql) {
+            // 参数先按列类型转换，作为单行来源
+            String src = plan.columns.stream().map(c -> "CAST(? AS " + c.sqlType() + ") AS " + c.quoted())
+                    .collect(Collectors.joining(","));
+            String sets = plan.updatable.stream().map(c -> c.quoted() + "=s." + c.quoted()).collect(Collectors.joining(","));
+            String vals = plan.columns.stream().map(c -> "s." + c.quoted()).collect(Collectors.joining(","));
+            return "MERGE INTO " + q + " USING (SELECT " + src + ") s ON " + q + "." + id.quoted() + "=s." + id.quoted()
+                    + (sets.isEmpty() ? "" : " WHEN MATCHED THEN UPDATE SET " + sets)
+                    + " WHEN NOT MATCHED THEN INSERT (" + cols + ") VALUES(" + vals + ")";
+        }
+        String sets = plan.updatable.isEmpty()
+                ? id.quoted() + "=" + id.quoted()
+                : plan.updatable.stream().map(c -> c.quoted() + "=VALUES(" + c.quoted() + ")").collect(Collectors.joining(","));
+        return "INSERT INTO " + q + "(" + cols + ") VALUES(" + qs + ") ON DUPLICATE KEY UPDATE " + sets;
+    }
+
+    /**
+     * 索引定义中的单列片段。
+     * MySQL 的 TEXT/BLOB 列与超过 191 字符的 VARCHAR 只能按前缀建索引；191 字符在 utf8mb4 下不超过 767 字节的索引上限。
+     * 前缀唯一索引只约束前 191 个字符，与声明的唯一性不符，直接拒绝。
+     */
+    String indexColumn(EntityPlan.ColumnPlan col, boolean unique) {
+        if (!mysql || !needsPrefix(col.sqlType().toUpperCase(Locale.ROOT))) return col.quoted();
+        if (unique) {
+            throw new IllegalArgumentException("Unique index on " + col.name() + " (" + col.sqlType()
+                    + ") would need a " + INDEX_PREFIX + "-character prefix on MySQL; shorten the column or drop unique");
+        }
+        return col.quoted() + "(" + INDEX_PREFIX + ")";
+    }
+
+    private static boolean needsPrefix(String type) {
+        if (type.endsWith("TEXT") || type.endsWith("BLOB")) return true;
+        if (!type.startsWith("VARCHAR(") || !type.endsWith(")")) return false;
+        try {
+            return Integer.parseInt(type.substring(8, type.length() - 1).trim()) > INDEX_PREFIX;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package core.linlang.database.impl;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 按线程绑定的事务单元。嵌套调用加入外层单元，由最外层提交或回滚。
+ * <p>
+ * 单元对每个数据源在首次使用时借一条主库连接；涉及多个数据源时按首次使用顺序逐个提交，
+ * 彼此之间不是原子的：后面的提交失败时，前面已提交的数据源不会回滚。
+ */
+final class Transactions {
+
+    private final ThreadLocal<Map<DataSource, UnitOfWork>> current = new ThreadLocal<>();
+
+    /** 当前线程在该数据源上的事务单元，按需借连接；不在单元内时返回 null */
+    UnitOfWork current(DataSource ds) throws SQLException {
+        Map<DataSource, UnitOfWork> units = current.get();
+        if (units == null) return null;
+        UnitOfWork uow = units.get(ds);
+        if (uow == null) {
+            Connection c = null;
+            try {
+                c = ds.getConnection();
+                uow = new UnitOfWork(c);
+            } catch (SQLException e) {
+                if (c != null) c.close();
+                throw e;
+            }
+            units.put(ds, uow);
+        }
+        return uow;
+    }
+
+    /** 当前线程在该数据源上已打开的事务单元，不借连接；没有时返回 null */
+    UnitOfWork joined(DataSource ds) {
+        Map<DataSource, UnitOfWork> units = current.get();
+        return units == null ? null : units.get(ds);
+    }
+
+    boolean active() {
+        return current.get() != null;
+    }
+
+    <R> R run(Supplier<R> work) {
+        if (current.get() != null) return work.get();
+        Map<DataSource, UnitOfWork> units = new LinkedHashMap<>();
+        current.set(units);
+        List<UnitOfWork> committed = new ArrayList<>();
+        try {
+            R result = work.get();
+            for (UnitOfWork uow : units.values()) {
+                if (uow.rollbackOnly()) {
+                    // 单元内有语句失败且异常被调用方吞掉，不能当作成功提交
+                    throw new IllegalStateException("unit of work rolled back after a failed statement");
+                }
+            }
+            for (UnitOfWork uow : units.values()) {
+                uow.commit();
+                committed.add(uow);
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            current.remove();
+            for (UnitOfWork uow : units.values()) {
+                boolean done = committed.contains(uow);
+                uow.finish(done);
+                for (Runnable r : done ? uow.commitHooks() : uow.rollbackHooks()) {
+                    try {
+                        r.run();
+                    } catch (RuntimeException ignored) {
+                    }
+                }
+            }
+        }
+    }
+}
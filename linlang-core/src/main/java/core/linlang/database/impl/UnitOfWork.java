@@ -0,0 +1,144 @@
+package core.linlang.database.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一个事务单元：独占一条连接，提交前所有仓库调用共用它。
+ * <p>
+ * 仓库代码照常对连接 close、commit、setAutoCommit，这里交出的是代理连接：这些调用被吞掉，
+ * 由 {@link Transactions} 在单元结束时统一提交或回滚；{@code prepareStatement(sql)} 按 SQL 复用语句，
+ * 语句的 close 只清参数与批次。带结果集类型参数的重载（流式查询使用）不复用，避免互相关闭游标。
+ */
+final class UnitOfWork {
+
+    private final Connection real;
+    private final Connection proxy;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<Object, Runnable> onRollback = new LinkedHashMap<>();
+    private final Map<Object, Runnable> onCommit = new LinkedHashMap<>();
+    private final boolean autoCommit;
+    private boolean rollbackOnly;
+
+    UnitOfWork(Connection real) throws SQLException {
+        this.real = real;
+        this.autoCommit = real.getAutoCommit();
+        real.setAutoCommit(false);
+        this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler());
+    }
+
+    Connection connection() {
+        return proxy;
+    }
+
+    /** 登记参与者在回滚时丢弃内存状态（缓存、快照等），同一参与者只登记一次 */
+    void enlist(Object participant, Runnable discard) {
+        onRollback.putIfAbsent(participant, discard);
+    }
+
+    /** 登记提交后执行的动作（如推进缓存纪元），同一参与者只登记一次 */
+    void afterCommit(Object participant, Runnable action) {
+        onCommit.putIfAbsent(participant, action);
+    }
+
+    boolean rollbackOnly() {
+        return rollbackOnly;
+    }
+
+    Iterable<Runnable> rollbackHooks() {
+        return onRollback.values();
+    }
+
+    Iterable<Runnable> commitHooks() {
+        return onCommit.values();
+    }
+
+    void commit() throws SQLException {
+        real.commit();
+    }
+
+    /** 结束单元：未提交的回滚，关闭缓存的语句并归还连接 */
+    void finish(boolean committed) {
+        for (PreparedStatement ps : statements.values()) {
+            try {
+                ps.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        statements.clear();
+        try {
+            if (!committed) real.rollback();
+            real.setAutoCommit(autoCommit);
+        } catch (SQLException ignored) {
+        }
+        try {
+            real.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object self, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close", "commit", "setAutoCommit":
+                    return null;
+                case "getAutoCommit":
+                    return false;
+                case "isClosed":
+                    return real.isClosed();
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        rollbackOnly = true;
+                        return null;
+                    }
+                    break;
+                case "prepareStatement":
+                    if (args.length == 1 || (args.length == 2 && args[1] instanceof Integer)) {
+                        String key = args.length == 1 ? (String) args[0] : args[1] + ":" + args[0];
+                        PreparedStatement ps = statements.get(key);
+                        if (ps == null) {
+                            ps = args.length == 1 ? real.prepareStatement((String) args[0])
+                                    : real.prepareStatement((String) args[0], (Integer) args[1]);
+                            statements.put(key, ps);
+                        }
+                        return reusable(ps);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return m.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static PreparedStatement reusable(PreparedStatement ps) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (self, m, args) -> {
+                    if (m.getName().equals("close") && (args == null || args.length == 0)) {
+                        ps.clearParameters();
+                        ps.clearBatch();
+                        return null;
+                    }
+                    if (m.getName().equals("isClosed")) return ps.isClosed();
+                    try {
+                        return m.invoke(ps, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,66 @@
+package core.linlang.database.impl;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * 字段值与数据库值之间的转换器。
+ * 在构建 {@link EntityPlan} 时按字段类型解析一次，热路径上不再做类型判断。
+ */
+interface ValueConverter {
+
+    /** 实体值 → JDBC 绑定值 */
+    Object toDb(Object v);
+
+    /** 驱动返回值 → 实体值 */
+    Object fromDb(Object v);
+
+    ValueConverter IDENTITY = new ValueConverter() {
+        public Object toDb(Object v) { return v; }
+        public Object fromDb(Object v) { return v; }
+    };
+
+    ValueConverter INSTANT = new ValueConverter() {
+        public Object toDb(Object v) { return v == null ? null : Timestamp.from((Instant) v); }
+        public Object fromDb(Object v) { return v instanceof Timestamp ts ? ts.toInstant() : v; }
+    };
+
+    ValueConverter LONG = new ValueConverter() {
+        public Object toDb(Object v) { return v; }
+        public Object fromDb(Object v) { return v instanceof Number n ? n.longValue() : v; }
+    };
+
+    ValueConverter INT = new ValueConverter() {
+        public Object toDb(Object v) { return v; }
+        public Object fromDb(Object v) { return v instanceof Number n ? n.intValue() : v; }
+    };
+
+    // H2 的 TINYINT(1) 以数字返回
+    ValueConverter BOOLEAN = new ValueConverter() {
+        public Object toDb(Object v) { return v; }
+        public Object fromDb(Object v) { return v instanceof Number n ? n.intValue() != 0 : v; }
+    };
+
+    // FLOAT 列在 H2 中为双精度
+    ValueConverter FLOAT = new ValueConverter() {
+        public Object toDb(Object v) { return v; }
+        public Object fromDb(Object v) { return v instanceof Number n ? n.floatValue() : v; }
+    };
+
+    // UUID 以 36 位字符串存储，字典序与 UUIDv7 的时间序一致
+    ValueConverter UUID_STRING = new ValueConverter() {
+        public Object toDb(Object v) { return v == null ? null : v.toString(); }
+        public Object fromDb(Object v) { return v instanceof String s ? UUID.fromString(s) : v; }
+    };
+
+    static ValueConverter forType(Class<?> t) {
+        if (t == Instant.class) return INSTANT;
+        if (t == Long.class || t == long.class) return LONG;
+        if (t == Integer.class || t == int.class) return INT;
+        if (t == Boolean.class || t == boolean.class) return BOOLEAN;
+        if (t == Float.class || t == float.class) return FLOAT;
+        if (t == UUID.class) return UUID_STRING;
+        return IDENTITY;
+    }
+}
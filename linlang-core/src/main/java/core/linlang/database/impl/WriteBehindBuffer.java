@@ -0,0 +1,221 @@
+package core.linlang.database.impl;
+
+import api.linlang.audit.LinLog;
+import api.linlang.file.database.repo.DatabaseUnavailableException;
+import core.linlang.audit.message.LinMsg;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 延迟写缓冲。
+ * <p>
+ * 已有 ID 的实体按 ID 合并，只保留最新的保存/删除状态；尚无 ID 的新实体（自增主键）单独排队。
+ * 后台按 {@code flushMillis} 定时、或待写数达到 {@code maxPending} 时落盘；{@link #drain()} 同步落盘。
+ * 待写数达到 {@code maxPending} 的 {@value #BACKPRESSURE} 倍时，写入方先同步落盘再入队，缓冲不会无限增长。
+ */
+final class WriteBehindBuffer<T> {
+
+    /** 批量写出回调：同一事务内写入 saves 与 deletes */
+    @FunctionalInterface
+    interface Writer<T> {
+        void write(List<T> saves, List<Object> deletes);
+    }
+
+    /** 某 ID 的最新待写状态；entity 为 null 表示删除 */
+    record Pending<T>(T entity) {
+        boolean deleted() { return entity == null; }
+    }
+
+    /** 同步落盘的阈值倍数 */
+    static final int BACKPRESSURE = 4;
+
+    private final String name;
+    private final Writer<T> writer;
+    private final Function<T, Object> key;
+    private final int maxPending;
+    private final ScheduledExecutorService scheduler;
+    private final ScheduledFuture<?> tick;
+
+    private final Map<Object, Pending<T>> byId = new ConcurrentHashMap<>();
+    private final Set<T> fresh = Collections.newSetFromMap(new IdentityHashMap<>()); // 受 drainLock 保护
+    private volatile int freshCount;
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private final Object drainLock = new Object();
+
+    /** key 返回实体当前的 ID，尚无 ID 时返回 null */
+    WriteBehindBuffer(String name, Writer<T> writer, Function<T, Object> key, int maxPending,
+                      long flushMillis, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.writer = writer;
+        this.key = key;
+        this.maxPending = Math.max(1, maxPending);
+        this.scheduler = scheduler;
+        long period = Math.max(50L, flushMillis);
+        this.tick = scheduler.scheduleWithFixedDelay(this::drainQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void save(Object id, T entity) {
+        backpressure();
+        if (id != null) byId.put(id, new Pending<>(entity));
+        else {
+            // 与落盘互斥：正在落盘的新实体提交后才有 ID，届时按 ID 合并，不会重复插入
+            synchronized (drainLock) {
+                Object now = key.apply(entity);
+                if (now != null) byId.put(now, new Pending<>(entity));
+                else if (fresh.add(entity)) freshCount = fresh.size();
+            }
+        }
+        onWrite();
+    }
+
+    void delete(Object id) {
+        backpressure();
+        byId.put(id, new Pending<>(null));
+        onWrite();
+    }
+
+    /** 查询某 ID 的待写状态，无则返回 null */
+    Pending<T> lookup(Object id) {
+        return byId.get(id);
+    }
+
+    boolean isEmpty() {
+        return byId.isEmpty() && freshCount == 0;
+    }
+
+    int size() {
+        return byId.size() + freshCount;
+    }
+
+    /** 丢弃全部待写（deleteAll 时使用） */
+    void clear() {
+        synchronized (drainLock) {
+            byId.clear();
+            fresh.clear();
+            freshCount = 0;
+        }
+    }
+
+    /**
+     * 同步落盘。整批失败时逐条重试：连接类失败的条目回填（不覆盖其后的新状态）并抛出，
+     * 其余失败的条目记日志后丢弃，不再阻塞后续落盘。
+     */
+    void drain() {
+        synchronized (drainLock) {
+            drainQueued.set(false);
+            if (isEmpty()) return;
+            Map<Object, Pending<T>> taken = new HashMap<>();
+            for (Map.Entry<Object, Pending<T>> en : byId.entrySet()) {
+                // 仅当状态未被并发替换时取走
+                if (byId.remove(en.getKey(), en.getValue())) taken.put(en.getKey(), en.getValue());
+            }
+            List<T> inserted = new ArrayList<>(fresh);
+            fresh.clear();
+            freshCount = 0;
+            List<T> saves = new ArrayList<>();
+            List<Object> deletes = new ArrayList<>();
+            for (Map.Entry<Object, Pending<T>> en : taken.entrySet()) {
+                if (en.getValue().deleted()) deletes.add(en.getKey());
+                else saves.add(en.getValue().entity());
+            }
+            saves.addAll(inserted);
+            try {
+                writer.write(saves, deletes);
+            } catch (RuntimeException ex) {
+                if (unavailable(ex)) {
+                    restore(taken.entrySet(), inserted);
+                    throw ex;
+                }
+                retryEach(taken, inserted);
+            }
+        }
+    }
+
+    /** 逐条写出；遇到连接类失败时回填该条及其后未写的条目并抛出 */
+    private void retryEach(Map<Object, Pending<T>> taken, List<T> inserted) {
+        List<Map.Entry<Object, Pending<T>>> rows = new ArrayList<>(taken.entrySet());
+        for (int i = 0; i < rows.size(); i++) {
+            Map.Entry<Object, Pending<T>> en = rows.get(i);
+            try {
+                if (en.getValue().deleted()) writer.write(List.of(), List.of(en.getKey()));
+                else writer.write(List.of(en.getValue().entity()), List.of());
+            } catch (RuntimeException one) {
+                if (unavailable(one)) {
+                    restore(rows.subList(i, rows.size()), inserted);
+                    throw one;
+                }
+                rejected(en.getKey(), one);
+            }
+        }
+        for (int i = 0; i < inserted.size(); i++) {
+            T e = inserted.get(i);
+            try {
+                writer.write(List.of(e), List.of());
+            } catch (RuntimeException one) {
+                if (unavailable(one)) {
+                    restore(List.of(), inserted.subList(i, inserted.size()));
+                    throw one;
+                }
+                rejected(null, one);
+            }
+        }
+    }
+
+    private void restore(Iterable<Map.Entry<Object, Pending<T>>> rows, List<T> inserted) {
+        for (Map.Entry<Object, Pending<T>> en : rows) byId.putIfAbsent(en.getKey(), en.getValue());
+        fresh.addAll(inserted);
+        freshCount = fresh.size();
+    }
+
+    private void rejected(Object id, RuntimeException ex) {
+        LinLog.warn(LinMsg.k("linData.writeBehindRejected"), "data", name, "id", String.valueOf(id),
+                "reason", String.valueOf(ex.getMessage()));
+    }
+
+    /** 连接类失败：熔断器拒绝，或异常链上的 SQLException 属于连接问题 */
+    static boolean unavailable(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof DatabaseUnavailableException) return true;
+            if (t instanceof SQLException s) return CircuitBreaker.unavailable(s);
+        }
+        return false;
+    }
+
+    /** 停止定时任务并同步落盘 */
+    void close() {
+        tick.cancel(false);
+        drain();
+    }
+
+    /** 积压过多时由写入方同步落盘；落盘失败则本次写入一并失败 */
+    private void backpressure() {
+        if (size() >= maxPending * BACKPRESSURE) drain();
+    }
+
+    private void onWrite() {
+        if (size() >= maxPending && drainQueued.compareAndSet(false, true)) {
+            scheduler.execute(this::drainQuietly);
+        }
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (Throwable e) {
+            LinLog.warn(LinMsg.k("linData.flushFailed"), "data", name, "reason", String.valueOf(e.getMessage()));
+        }
+    }
+}
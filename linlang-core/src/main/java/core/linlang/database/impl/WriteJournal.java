@@ -0,0 +1,385 @@
+package core.linlang.database.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 降级模式的本地写日志。
+ * <p>
+ * 记录追加到 {@code journal/} 下按序编号的内存映射段文件，每条为 [长度][CRC32C][正文]。
+ * 打开时逐条校验，遇到长度为 0 或校验不符（崩溃留下的半条）即视为该段结尾；重启后总是新开一段写入。
+ * 回放按序读出一批交给回调，成功后推进读位置并写入 {@code checkpoint}，读完的段随即删除。
+ * <p>
+ * 回放至少一次：提交与记录读位置之间崩溃会重放最后一批。保存按整行 upsert、删除按 ID，重放结果不变；
+ * 仅自增主键的新行可能重复插入。
+ */
+final class WriteJournal implements AutoCloseable {
+
+    static final byte SAVE = 1;        // 全部列（含 ID），回放为 upsert
+    static final byte INSERT = 2;      // 非 ID 列，回放为自增插入
+    static final byte DELETE = 3;      // ID
+    static final byte DELETE_ALL = 4;  // 无值
+
+    /** values 为转换后的数据库值，顺序同对应语句的参数 */
+    record Entry(String table, byte op, Object[] values) {}
+
+    /** 回放回调：按序执行一批记录，抛出即不推进 */
+    @FunctionalInterface
+    interface Applier {
+        void apply(List<Entry> batch) throws SQLException;
+    }
+
+    private static final int SEGMENT_BYTES = 16 << 20;
+    private static final int HEADER = 8;
+
+    private static final class Segment {
+        final long no;
+        final Path path;
+        final MappedByteBuffer buf;
+        int end;    // 最后一条有效记录之后
+
+        Segment(long no, Path path, MappedByteBuffer buf) {
+            this.no = no;
+            this.path = path;
+            this.buf = buf;
+        }
+    }
+
+    private final Path dir;
+    private final FileChannel checkpoint;
+    private final Object lock = new Object();        // 追加、读取与段增删
+    private final Object replayLock = new Object();  // 同一时刻只有一个回放者
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();   // 首段读取，末段写入
+    private int readPos;
+    private volatile long depth;
+
+    private volatile long appended;
+    private volatile long replayed;
+    private volatile long rejected;
+    private volatile long replayRate;   // 最近一轮回放的条/秒
+
+    WriteJournal(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        this.checkpoint = FileChannel.open(dir.resolve("checkpoint"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long cpSeg = 0;
+        int cpPos = 0;
+        ByteBuffer cp = ByteBuffer.allocate(12);
+        if (checkpoint.read(cp, 0) == 12) {
+            cp.flip();
+            cpSeg = cp.getLong();
+            cpPos = cp.getInt();
+        }
+        List<Long> nos;
+        try (Stream<Path> files = Files.list(dir)) {
+            nos = files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.matches("\\d+\\.seg"))
+                    .map(n -> Long.parseLong(n.substring(0, n.length() - 4)))
+                    .sorted().toList();
+        }
+        long last = cpSeg;
+        for (long no : nos) {
+            last = Math.max(last, no);
+            if (no < cpSeg) {
+                Files.deleteIfExists(path(no));
+                continue;
+            }
+            Segment s = map(no, 0);
+            int from = no == cpSeg ? cpPos : 0;
+            if (segments.isEmpty()) readPos = from;
+            depth += scan(s, from);
+            segments.add(s);
+        }
+        // 旧段只读，新写入总在新段，避免覆盖半条记录后的残留字节
+        Segment fresh = map(last + 1, SEGMENT_BYTES);
+        if (segments.isEmpty()) readPos = 0;
+        segments.add(fresh);
+        dropConsumed();
+        writeCheckpoint(segments.peekFirst().no, readPos);
+    }
+
+    /** 是否还有未回放的记录 */
+    boolean pending() {
+        return depth > 0;
+    }
+
+    long depth() {
+        return depth;
+    }
+
+    /** 编码失败（不支持的值类型）时抛出，日志不变 */
+    void append(String table, byte op, Object[] values) {
+        byte[] body = encode(table, op, values);
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        synchronized (lock) {
+            Segment s = segments.peekLast();
+            if (s.end + HEADER + body.length > s.buf.capacity()) s = roll(body.length);
+            // 正文与校验先于长度写入，长度非 0 即整条可见
+            s.buf.put(s.end + HEADER, body);
+            s.buf.putInt(s.end + 4, (int) crc.getValue());
+            s.buf.putInt(s.end, body.length);
+            s.end += HEADER + body.length;
+            depth++;
+            appended++;
+        }
+    }
+
+    /**
+     * 读出至多 max 条（遇到 ready 不接受的记录即止）交给 applier，成功后推进读位置。
+     * @return 回放条数
+     */
+    int replay(int max, Predicate<Entry> ready, Applier applier) throws SQLException {
+        synchronized (replayLock) {
+            List<Entry> batch = new ArrayList<>();
+            int pos;
+            synchronized (lock) {
+                dropConsumed();
+                Segment s = segments.peekFirst();
+                pos = readPos;
+                while (batch.size() < max && pos < s.end) {
+                    int len = s.buf.getInt(pos);
+                    byte[] body = new byte[len];
+                    s.buf.get(pos + HEADER, body);
+                    Entry en = decode(body);
+                    if (!ready.test(en)) break;
+                    batch.add(en);
+                    pos += HEADER + len;
+                }
+            }
+            if (batch.isEmpty()) return 0;
+            applier.apply(batch);
+            synchronized (lock) {
+                readPos = pos;
+                depth -= batch.size();
+                replayed += batch.size();
+                dropConsumed();
+                writeCheckpoint(segments.peekFirst().no, readPos);
+            }
+            return batch.size();
+        }
+    }
+
+    /** 记录一条回放时被数据库拒绝、已跳过的记录 */
+    void rejected() {
+        rejected++;
+    }
+
+    void replayRate(long perSecond) {
+        this.replayRate = perSecond;
+    }
+
+    /** 把写入段的脏页刷到磁盘 */
+    void sync() {
+        synchronized (lock) {
+            segments.peekLast().buf.force();
+        }
+    }
+
+    Map<String, Long> stats() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("journal.depth", depth);
+        synchronized (lock) {
+            m.put("journal.segments", (long) segments.size());
+        }
+        m.put("journal.appended", appended);
+        m.put("journal.replayed", replayed);
+        m.put("journal.replayRate", replayRate);
+        m.put("journal.rejected", rejected);
+        return m;
+    }
+
+    @Override
+    public void close() {
+        sync();
+        try {
+            checkpoint.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    // —— 段文件 —— //
+
+    private Path path(long no) {
+        return dir.resolve(String.format("%012d.seg", no));
+    }
+
+    /** size 为 0 时按现有文件大小映射 */
+    private Segment map(long no, int size) throws IOException {
+        Path p = path(no);
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long len = size > 0 ? size : ch.size();
+            return new Segment(no, p, ch.map(FileChannel.MapMode.READ_WRITE, 0, len));
+        }
+    }
+
+    private Segment roll(int bodyLength) {
+        Segment last = segments.peekLast();
+        last.buf.force();
+        try {
+            Segment s = map(last.no + 1, Math.max(SEGMENT_BYTES, HEADER + bodyLength));
+            segments.add(s);
+            return s;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** 从 from 起校验记录，定出段尾，返回有效记录数 */
+    private static long scan(Segment s, int from) {
+        int pos = from;
+        long n = 0;
+        CRC32C crc = new CRC32C();
+        while (pos + HEADER <= s.buf.capacity()) {
+            int len = s.buf.getInt(pos);
+            if (len <= 0 || pos + HEADER + len > s.buf.capacity()) break;
+            byte[] body = new byte[len];
+            s.buf.get(pos + HEADER, body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != s.buf.getInt(pos + 4)) break;
+            pos += HEADER + len;
+            n++;
+        }
+        s.end = pos;
+        return n;
+    }
+
+    /** 丢弃已读完的非写入段；删除失败（如 Windows 上仍被映射）留待下次启动清理 */
+    private void dropConsumed() {
+        while (segments.size() > 1 && readPos >= segments.peekFirst().end) {
+            Segment done = segments.pollFirst();
+            readPos = 0;
+            try {
+                Files.deleteIfExists(done.path);
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private void writeCheckpoint(long seg, int pos) {
+        ByteBuffer cp = ByteBuffer.allocate(12).putLong(seg).putInt(pos).flip();
+        try {
+            checkpoint.write(cp, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // —— 编解码 —— //
+
+    private static byte[] encode(String table, byte op, Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(table);
+            out.writeByte(op);
+            out.writeShort(values.length);
+            for (Object v : values) writeValue(out, v);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeValue(DataOutputStream out, Object v) throws IOException {
+        if (v == null) {
+            out.writeByte(0);
+        } else if (v instanceof Long l) {
+            out.writeByte(1);
+            out.writeLong(l);
+        } else if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            out.writeByte(2);
+            out.writeInt(((Number) v).intValue());
+        } else if (v instanceof Double d) {
+            out.writeByte(3);
+            out.writeDouble(d);
+        } else if (v instanceof Float f) {
+            out.writeByte(4);
+            out.writeFloat(f);
+        } else if (v instanceof Boolean b) {
+            out.writeByte(5);
+            out.writeBoolean(b);
+        } else if (v instanceof String s) {
+            out.writeByte(6);
+            writeBytes(out, s.getBytes(StandardCharsets.UTF_8));
+        } else if (v instanceof Timestamp ts) {
+            out.writeByte(7);
+            out.writeLong(ts.getTime());
+            out.writeInt(ts.getNanos());
+        } else if (v instanceof byte[] b) {
+            out.writeByte(8);
+            writeBytes(out, b);
+        } else if (v instanceof BigDecimal d) {
+            out.writeByte(9);
+            writeBytes(out, d.toString().getBytes(StandardCharsets.UTF_8));
+        } else {
+            throw new IllegalArgumentException("Cannot journal value of type " + v.getClass().getName());
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static Entry decode(byte[] body) {
+        try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(body))) {
+            String table = in.readUTF();
+            byte op = in.readByte();
+            Object[] values = new Object[in.readUnsignedShort()];
+            for (int i = 0; i < values.length; i++) values[i] = readValue(in);
+            return new Entry(table, op, values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case 0 -> null;
+            case 1 -> in.readLong();
+            case 2 -> in.readInt();
+            case 3 -> in.readDouble();
+            case 4 -> in.readFloat();
+            case 5 -> in.readBoolean();
+            case 6 -> new String(readBytes(in), StandardCharsets.UTF_8);
+            case 7 -> {
+                Timestamp ts = new Timestamp(in.readLong());
+                ts.setNanos(in.readInt());
+                yield ts;
+            }
+            case 8 -> readBytes(in);
+            case 9 -> new BigDecimal(new String(readBytes(in), StandardCharsets.UTF_8));
+            default -> throw new IOException("Unknown journal value tag " + tag);
+        };
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return b;
+    }
+}
@@ -0,0 +1,107 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.config.DbConfig;
+import api.linlang.file.database.types.DbType;
+import api.linlang.file.database.types.ReplicaSelection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** 副本选择：轮询、按延迟、暂停连不上的副本与全部暂停时回落主库 */
+class DataSourceGroupTest {
+
+    private static final String PRIMARY = mem("dsg_primary");
+    private static final String REPLICA_A = mem("dsg_replica_a");
+    private static final String REPLICA_B = mem("dsg_replica_b");
+
+    private DataSourceGroup group;
+
+    static String mem(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    private DataSourceGroup open(ReplicaSelection selection) {
+        DbConfig cfg = DbConfig.of(PRIMARY, "sa", "", 2)
+                .replica(REPLICA_A)
+                .replica(REPLICA_B)
+                .replicaSelection(selection)
+                .breakerOpenMillis(60_000L);
+        group = new DataSourceGroup("default", DbType.H2, PRIMARY, cfg, cfg, null);
+        return group;
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (group != null) group.close();
+        for (String url : new String[]{PRIMARY, REPLICA_A, REPLICA_B}) {
+            try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement s = c.createStatement()) {
+                s.execute("SHUTDOWN");
+            }
+        }
+    }
+
+    @Test
+    void roundRobinAlternatesReplicas() throws SQLException {
+        DataSourceGroup g = open(ReplicaSelection.ROUND_ROBIN);
+        assertTrue(g.hasReplicas());
+        DataSourceGroup.Replica first = g.pick();
+        DataSourceGroup.Replica second = g.pick();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(Set.of(REPLICA_A, REPLICA_B), Set.of(first.url, second.url));
+        assertSame(first, g.pick());
+        try (Connection c = first.ds().getConnection()) {
+            assertTrue(c.isValid(1));
+        }
+    }
+
+    @Test
+    void downReplicaIsSkippedAndAllDownFallsBackToPrimary() {
+        DataSourceGroup g = open(ReplicaSelection.ROUND_ROBIN);
+        DataSourceGroup.Replica a = g.pick();
+        DataSourceGroup.Replica b = g.pick();
+        g.down(a);
+        for (int i = 0; i < 4; i++) assertSame(b, g.pick());
+
+        g.down(b);
+        assertNull(g.pick());
+        assertEquals(1L, (long) g.stats().get("replica.fallbackReads"));
+        assertEquals(1L, (long) g.stats().get("replica.0.failures"));
+        assertEquals(1L, (long) g.stats().get("replica.1.failures"));
+    }
+
+    @Test
+    void leastLatencyPrefersTheFastestReplica() {
+        DataSourceGroup g = open(ReplicaSelection.LEAST_LATENCY);
+        DataSourceGroup.Replica slow = g.pick();
+        slow.observe(50_000_000L);
+        // 尚未测过延迟的副本优先
+        DataSourceGroup.Replica fast = g.pick();
+        assertNotSame(slow, fast);
+        fast.observe(1_000_000L);
+
+        Set<String> seen = new HashSet<>();
+        int fastPicks = 0;
+        for (int i = 0; i < 64; i++) {
+            DataSourceGroup.Replica r = g.pick();
+            seen.add(r.url);
+            if (r == fast) fastPicks++;
+        }
+        // 每隔若干次轮询一次，慢副本仍偶尔被选中以刷新延迟
+        assertTrue(fastPicks >= 56, "fast replica picked " + fastPicks + " times");
+        assertEquals(Set.of(REPLICA_A, REPLICA_B), seen);
+    }
+}
@@ -0,0 +1,151 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Entity;
+import api.linlang.file.database.annotations.Id;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** 物化：四种实体形态各自走对应的物化器，按列序号从结果集取值 */
+class EntityAccessorTest {
+
+    @Entity
+    static class Mutable {
+        @Id long id;
+        String name;
+        int score;
+        double ratio;
+        Instant seen;
+    }
+
+    @Entity
+    static class Frozen {
+        @Id private final long id;
+        private final String name;
+
+        Frozen() {
+            this.id = 0L;
+            this.name = null;
+        }
+    }
+
+    @Entity
+    record Point(@Id long id, String name, int x) {}
+
+    @Entity
+    static final class Fixed {
+        @Id private final long id;
+        private final String name;
+
+        Fixed(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    @Entity
+    static final class NoConstructor {
+        @Id private final long id;
+        private final String name;
+
+        NoConstructor(String name) {
+            this.id = 0L;
+            this.name = name;
+        }
+    }
+
+    @Test
+    void mutableEntityIsFilledFieldByField() throws SQLException {
+        EntityPlan<Mutable> plan = EntityPlan.of(Mutable.class, "mutable");
+        Instant seen = Instant.parse("2024-01-02T03:04:05Z");
+        Mutable m = plan.entity.read(row(7L, "alex", 42, 0.5d, Timestamp.from(seen)));
+        assertTrue(plan.entity.mutable());
+        assertEquals(7L, m.id);
+        assertEquals("alex", m.name);
+        assertEquals(42, m.score);
+        assertEquals(0.5d, m.ratio);
+        assertEquals(seen, m.seen);
+
+        Mutable same = plan.entity.with(m, plan.column("score").orElseThrow(), 43);
+        assertSame(m, same);
+        assertEquals(43, m.score);
+    }
+
+    @Test
+    void nullPrimitivesKeepTheirDefault() throws SQLException {
+        EntityPlan<Mutable> plan = EntityPlan.of(Mutable.class, "mutable");
+        Mutable m = plan.entity.read(row(1L, null, null, null, null));
+        assertNull(m.name);
+        assertEquals(0, m.score);
+        assertNull(m.seen);
+    }
+
+    @Test
+    void finalFieldsWithNoArgConstructorAreWrittenReflectively() throws SQLException {
+        EntityPlan<Frozen> plan = EntityPlan.of(Frozen.class, "frozen");
+        assertTrue(plan.entity.mutable());
+        Frozen f = plan.entity.read(row(3L, "steve"));
+        assertEquals(3L, f.id);
+        assertEquals("steve", f.name);
+    }
+
+    @Test
+    void recordUsesCanonicalConstructor() throws SQLException {
+        EntityPlan<Point> plan = EntityPlan.of(Point.class, "point");
+        assertFalse(plan.entity.mutable());
+        Point p = plan.entity.read(row(5L, "spawn", 12));
+        assertEquals(new Point(5L, "spawn", 12), p);
+
+        Point moved = plan.entity.with(p, plan.column("x").orElseThrow(), 13);
+        assertNotSame(p, moved);
+        assertEquals(12, p.x());
+        assertEquals(new Point(5L, "spawn", 13), moved);
+    }
+
+    @Test
+    void immutableClassUsesAllArgsConstructor() throws SQLException {
+        EntityPlan<Fixed> plan = EntityPlan.of(Fixed.class, "fixed");
+        assertFalse(plan.entity.mutable());
+        Fixed f = plan.entity.read(row(9L, "notch"));
+        assertEquals(9L, f.id);
+        assertEquals("notch", f.name);
+
+        Fixed renamed = plan.entity.with(f, plan.column("name").orElseThrow(), "jeb");
+        assertEquals("notch", f.name);
+        assertEquals("jeb", renamed.name);
+        assertEquals(9L, renamed.id);
+    }
+
+    @Test
+    void entityWithoutUsableConstructorIsRejected() {
+        assertThrows(IllegalStateException.class, () -> EntityPlan.of(NoConstructor.class, "no_ctor"));
+    }
+
+    /** 只有一行的结果集，按 1 起的列序号返回 values */
+    private static ResultSet row(Object... values) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object v = args != null && args.length == 1 && args[0] instanceof Integer i ? values[i - 1] : null;
+                    return switch (method.getName()) {
+                        case "getObject" -> v;
+                        case "getInt" -> v == null ? 0 : ((Number) v).intValue();
+                        case "getLong" -> v == null ? 0L : ((Number) v).longValue();
+                        case "getDouble" -> v == null ? 0d : ((Number) v).doubleValue();
+                        case "wasNull" -> false;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
@@ -0,0 +1,201 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Column;
+import api.linlang.file.database.annotations.Entity;
+import api.linlang.file.database.annotations.Id;
+import api.linlang.file.database.annotations.Transient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * findById 前后对比（内存 H2）：每次调用拼 SQL + 反射写字段，对照预编译计划 + 句柄物化。
+ * 默认不跑：{@code mvn -pl linlang-core test -Dgroups=benchmark -Dtest.excludedGroups=}
+ */
+@Tag("benchmark")
+class EntityPlanBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final int WARMUP = 20_000;
+    private static final int MEASURE = 200_000;
+
+    @Entity
+    static class PlayerData {
+        @Id long id;
+        @Column(length = 16) String name;
+        int level;
+        long coins;
+        double balance;
+        Instant lastSeen;
+        @Transient String session;
+    }
+
+    private Connection c;
+    private EntityPlan<PlayerData> plan;
+    private Legacy legacy;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        c = DriverManager.getConnection("jdbc:h2:mem:plan_bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+        plan = EntityPlan.of(PlayerData.class, "player_data");
+        legacy = new Legacy(PlayerData.class, "player_data");
+        try (Statement s = c.createStatement()) {
+            s.execute(plan.createTable);
+        }
+        try (PreparedStatement ps = c.prepareStatement(plan.insert)) {
+            for (int i = 1; i <= ROWS; i++) {
+                ps.setString(1, "p" + i);
+                ps.setInt(2, i % 100);
+                ps.setLong(3, i * 10L);
+                ps.setDouble(4, i / 3d);
+                ps.setTimestamp(5, Timestamp.from(Instant.ofEpochSecond(1_700_000_000L + i)));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Statement s = c.createStatement()) {
+            s.execute("DROP TABLE `player_data`");
+        }
+        c.close();
+    }
+
+    @Test
+    void findById() throws Exception {
+        PlayerData a = legacy.findById(c, 17L);
+        PlayerData b = planFindById(17L);
+        assertEquals(a.name, b.name);
+        assertEquals(a.coins, b.coins);
+        assertEquals(a.lastSeen, b.lastSeen);
+
+        for (int i = 0; i < WARMUP; i++) {
+            legacy.findById(c, 1L + i % ROWS);
+            planFindById(1L + i % ROWS);
+        }
+        long before = time(i -> legacy.findById(c, 1L + i % ROWS));
+        long after = time(i -> planFindById(1L + i % ROWS));
+        System.out.printf("findById  before: %,d ns/op  after: %,d ns/op  (%.2fx)%n",
+                before / MEASURE, after / MEASURE, (double) before / after);
+    }
+
+    @Test
+    void findAll() throws Exception {
+        int rounds = MEASURE / ROWS;
+        for (int i = 0; i < rounds; i++) {
+            legacy.findAll(c);
+            planFindAll();
+        }
+        long before = time(rounds, i -> legacy.findAll(c));
+        long after = time(rounds, i -> planFindAll());
+        System.out.printf("findAll   before: %,d ns/row  after: %,d ns/row  (%.2fx)%n",
+                before / ((long) rounds * ROWS), after / ((long) rounds * ROWS), (double) before / after);
+    }
+
+    private PlayerData planFindById(long id) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(plan.selectById)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? plan.entity.read(rs) : null;
+            }
+        }
+    }
+
+    private List<PlayerData> planFindAll() throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(plan.selectAll); ResultSet rs = ps.executeQuery()) {
+            List<PlayerData> out = new ArrayList<>();
+            while (rs.next()) out.add(plan.entity.read(rs));
+            return out;
+        }
+    }
+
+    private interface Op {
+        void run(int i) throws Exception;
+    }
+
+    private static long time(Op op) throws Exception {
+        return time(MEASURE, op);
+    }
+
+    private static long time(int n, Op op) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) op.run(i);
+        return Math.max(1L, System.nanoTime() - start);
+    }
+
+    /** 计划引入前的做法：每次调用按字段拼 SQL，无参构造后逐字段 Field.set */
+    private static final class Legacy {
+        private final Class<?> type;
+        private final String table;
+        private final List<Field> fields = new ArrayList<>();
+        private final Map<Field, String> colName = new LinkedHashMap<>();
+        private Field idField;
+
+        Legacy(Class<?> type, String table) {
+            this.type = type;
+            this.table = table;
+            for (Field f : type.getDeclaredFields()) {
+                int mod = f.getModifiers();
+                if (Modifier.isStatic(mod) || Modifier.isTransient(mod) || f.isAnnotationPresent(Transient.class)) continue;
+                f.setAccessible(true);
+                if (f.isAnnotationPresent(Id.class)) idField = f;
+                fields.add(f);
+                colName.put(f, f.getName());
+            }
+        }
+
+        PlayerData findById(Connection c, Object id) throws Exception {
+            String cols = fields.stream().map(f -> "`" + colName.get(f) + "`").collect(Collectors.joining(","));
+            String sql = "SELECT " + cols + " FROM `" + table + "` WHERE `" + colName.get(idField) + "`=? LIMIT 1";
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setObject(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? fromRow(rs) : null;
+                }
+            }
+        }
+
+        List<PlayerData> findAll(Connection c) throws Exception {
+            String cols = fields.stream().map(f -> "`" + colName.get(f) + "`").collect(Collectors.joining(","));
+            String sql = "SELECT " + cols + " FROM `" + table + "`";
+            try (PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+                List<PlayerData> out = new ArrayList<>();
+                while (rs.next()) out.add(fromRow(rs));
+                return out;
+            }
+        }
+
+        private PlayerData fromRow(ResultSet rs) throws Exception {
+            Object obj = type.getDeclaredConstructor().newInstance();
+            int idx = 1;
+            for (Field f : fields) {
+                Object v = rs.getObject(idx++);
+                if (v instanceof Timestamp t && f.getType() == Instant.class) v = t.toInstant();
+                if (v instanceof Number n && f.getType() == int.class) v = n.intValue();
+                f.set(obj, v);
+            }
+            return (PlayerData) obj;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Column;
+import api.linlang.file.database.annotations.Entity;
+import api.linlang.file.database.annotations.Id;
+import api.linlang.file.database.annotations.Transient;
+import api.linlang.file.database.annotations.Version;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** 预编译计划：列顺序、序号与各条 SQL 在构建时一次拼好 */
+class EntityPlanTest {
+
+    @Entity
+    static class Player {
+        @Id long id;
+        @Column(name = "display_name", length = 32) String name;
+        int score;
+        @Transient String cached;
+        transient int scratch;
+    }
+
+    @Entity
+    static class Versioned {
+        @Id long id;
+        String name;
+        @Version long version;
+    }
+
+    @Entity
+    static class NoId {
+        String name;
+    }
+
+    @Entity
+    static class Generated {
+        @Id(generator = "snowflake") long id;
+        String name;
+    }
+
+    static class Partial {
+        @Id(auto = false) String uuid;
+        @Column String name;
+        String ignored;
+    }
+
+    @Test
+    void columnsFollowDeclarationOrderWithOrdinals() {
+        EntityPlan<Player> plan = EntityPlan.of(Player.class, "player");
+        List<String> names = plan.columns.stream().map(EntityPlan.ColumnPlan::name).toList();
+        assertEquals(List.of("id", "display_name", "score"), names);
+        for (int i = 0; i < plan.columns.size(); i++) assertEquals(i + 1, plan.columns.get(i).ordinal());
+        assertSame(plan.columns.get(0), plan.id);
+        assertEquals(List.of("display_name", "score"), plan.writable.stream().map(EntityPlan.ColumnPlan::name).toList());
+        assertSame(plan.columns.get(1), plan.column("display_name").orElseThrow());
+        assertSame(plan.columns.get(1), plan.column("name").orElseThrow());
+    }
+
+    @Test
+    void sqlIsPrecompiled() {
+        EntityPlan<Player> plan = EntityPlan.of(Player.class, "player");
+        assertEquals("SELECT `id`,`display_name`,`score` FROM `player`", plan.selectAll);
+        assertEquals("SELECT `id`,`display_name`,`score` FROM `player` WHERE `id`=? LIMIT 1", plan.selectById);
+        assertEquals("SELECT 1 FROM `player` WHERE `id`=? LIMIT 1", plan.existsById);
+        assertEquals("SELECT COUNT(*) FROM `player`", plan.count);
+        assertEquals("INSERT INTO `player`(`display_name`,`score`) VALUES(?,?)", plan.insert);
+        assertEquals("UPDATE `player` SET `display_name`=?,`score`=? WHERE `id`=?", plan.update);
+        assertEquals("DELETE FROM `player` WHERE `id`=?", plan.deleteById);
+        assertEquals("DELETE FROM `player`", plan.deleteAll);
+        assertTrue(plan.createTable.startsWith("CREATE TABLE IF NOT EXISTS `player`"));
+        assertTrue(plan.createTable.contains("`id` BIGINT AUTO_INCREMENT"));
+        assertTrue(plan.createTable.endsWith(", PRIMARY KEY(`id`))"));
+        assertTrue(plan.createTable.contains("`display_name` VARCHAR(32)"));
+    }
+
+    @Test
+    void keysetStatementsOrderById() {
+        EntityPlan<Player> plan = EntityPlan.of(Player.class, "player");
+        assertEquals("SELECT `id`,`display_name`,`score` FROM `player` ORDER BY `id` LIMIT ?", plan.keysetFirst);
+        assertEquals("SELECT `id`,`display_name`,`score` FROM `player` WHERE `id`>? ORDER BY `id` LIMIT ?", plan.keysetNext);
+        assertNull(EntityPlan.of(NoId.class, "no_id").keysetFirst);
+    }
+
+    @Test
+    void generatorIdIsAssignedBeforeInsert() {
+        EntityPlan<Generated> plan = EntityPlan.of(Generated.class, "generated");
+        assertEquals("snowflake", plan.generator);
+        assertFalse(plan.id.auto());
+        assertEquals("INSERT INTO `generated`(`id`,`name`) VALUES(?,?)", plan.insertAll);
+        assertFalse(plan.createTable.contains("AUTO_INCREMENT"));
+        assertNull(EntityPlan.of(Player.class, "player").generator);
+    }
+
+    @Test
+    void versionColumnGuardsUpdates() {
+        EntityPlan<Versioned> plan = EntityPlan.of(Versioned.class, "versioned");
+        assertEquals("version", plan.version.name());
+        assertEquals(" AND `version`=?", plan.versionCheck);
+        assertEquals("UPDATE `versioned` SET `name`=?,`version`=? WHERE `id`=? AND `version`=?", plan.update);
+        assertEquals("UPDATE `versioned` SET `version`=1 WHERE (`version` IS NULL OR `version`=0)", plan.versionBackfill);
+        assertEquals(plan.versionBackfill + " AND `id`=?", plan.versionAdopt);
+    }
+
+    @Test
+    void unversionedPlanHasNoVersionStatements() {
+        EntityPlan<Player> plan = EntityPlan.of(Player.class, "player");
+        assertNull(plan.version);
+        assertEquals("", plan.versionCheck);
+        assertNull(plan.versionBackfill);
+        assertNull(plan.versionAdopt);
+    }
+
+    @Test
+    void withoutEntityOnlyAnnotatedFieldsPersist() {
+        EntityPlan<Partial> plan = EntityPlan.of(Partial.class, "partial");
+        assertEquals(List.of("uuid", "name"), plan.columns.stream().map(EntityPlan.ColumnPlan::name).toList());
+        assertFalse(plan.id.auto());
+    }
+
+    @Test
+    void unknownColumnIsEmpty() {
+        EntityPlan<Player> plan = EntityPlan.of(Player.class, "player");
+        assertTrue(plan.column("nope").isEmpty());
+        assertTrue(plan.column("cached").isEmpty());
+    }
+
+    @Test
+    void idIsRequiredForIdStatements() {
+        EntityPlan<NoId> plan = EntityPlan.of(NoId.class, "no_id");
+        assertNull(plan.selectById);
+        assertNull(plan.update);
+        assertThrows(IllegalStateException.class, plan::requireId);
+    }
+}
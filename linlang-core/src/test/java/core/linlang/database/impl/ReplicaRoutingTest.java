@@ -0,0 +1,151 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Entity;
+import api.linlang.file.database.annotations.Id;
+import api.linlang.file.database.annotations.OnDataSource;
+import api.linlang.file.database.annotations.Table;
+import api.linlang.file.database.config.DbConfig;
+import api.linlang.file.database.repo.Repository;
+import api.linlang.file.database.types.DbType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多个内存 H2 组成的数据源：查询分到副本、写入与事务单元走主库、@OnDataSource 实体落在命名数据源。
+ * 副本与主库是互不复制的独立库，各放一行同 ID、不同内容的数据，以读到的内容判断走了哪个库。
+ */
+class ReplicaRoutingTest {
+
+    private static final String PRIMARY = DataSourceGroupTest.mem("rr_primary");
+    private static final String REPLICA = DataSourceGroupTest.mem("rr_replica");
+    private static final String SHARD = DataSourceGroupTest.mem("rr_shard");
+
+    @Entity
+    @Table(name = "rr_player")
+    static class Player {
+        @Id long id;
+        String name;
+    }
+
+    @Entity
+    @Table(name = "rr_ledger")
+    @OnDataSource("shard")
+    static class Ledger {
+        @Id long id;
+        long amount;
+    }
+
+    @Entity
+    @Table(name = "rr_orphan")
+    @OnDataSource("missing")
+    static class Orphan {
+        @Id long id;
+    }
+
+    private Path dir;
+    private DataServiceImpl data;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("linlang-rr");
+        Path root = dir;
+        data = new DataServiceImpl(() -> root);
+        data.init(DbType.H2, DbConfig.of(PRIMARY, "sa", "", 2)
+                .replica(REPLICA)
+                .datasource("shard", DbConfig.of(SHARD, "sa", "", 2)));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException, IOException {
+        data.close();
+        for (String url : new String[]{PRIMARY, REPLICA, SHARD}) exec(url, "SHUTDOWN");
+        try (var files = Files.walk(dir)) {
+            files.sorted(java.util.Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    void readsGoToReplicaWritesToPrimary() throws SQLException {
+        Repository<Player, Long> repo = data.repo(Player.class);
+        Player p = new Player();
+        p.name = "on-primary";
+        p = repo.save(p);
+
+        // 副本上同 ID 的行内容不同
+        exec(REPLICA, EntityPlan.of(Player.class, "rr_player").createTable);
+        exec(REPLICA, "INSERT INTO `rr_player`(`id`,`name`) VALUES(" + p.id + ",'on-replica')");
+
+        assertEquals("on-replica", repo.findById(p.id).orElseThrow().name);
+        assertEquals("on-primary", query(PRIMARY, "SELECT `name` FROM `rr_player` WHERE `id`=" + p.id));
+    }
+
+    @Test
+    void unitOfWorkReadsItsOwnWritesOnPrimary() throws SQLException {
+        Repository<Player, Long> repo = data.repo(Player.class);
+        exec(REPLICA, EntityPlan.of(Player.class, "rr_player").createTable);
+
+        String seen = data.inTransaction(() -> {
+            Player p = new Player();
+            p.name = "fresh";
+            Player saved = repo.save(p);
+            return repo.findById(saved.id).map(x -> x.name).orElse(null);
+        });
+        assertEquals("fresh", seen);
+        // 副本不复制，单元外再读就读不到
+        assertTrue(repo.findAll().isEmpty());
+    }
+
+    @Test
+    void annotatedEntityLivesOnNamedDatasource() throws SQLException {
+        Repository<Ledger, Long> ledger = data.repo(Ledger.class);
+        Ledger l = new Ledger();
+        l.amount = 250L;
+        l = ledger.save(l);
+
+        assertEquals("250", query(SHARD, "SELECT `amount` FROM `rr_ledger` WHERE `id`=" + l.id));
+        assertFalse(tableExists(PRIMARY, "rr_ledger"));
+        assertEquals(250L, ledger.findById(l.id).orElseThrow().amount);
+    }
+
+    @Test
+    void unknownDatasourceIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> data.repo(Orphan.class));
+    }
+
+    private static void exec(String url, String sql) throws SQLException {
+        try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement s = c.createStatement()) {
+            s.execute(sql);
+        }
+    }
+
+    private static String query(String url, String sql) throws SQLException {
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static boolean tableExists(String url, String table) throws SQLException {
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             ResultSet rs = c.getMetaData().getTables(null, null, table, null)) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Entity;
+import api.linlang.file.database.annotations.Id;
+import api.linlang.file.database.dto.Criteria;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** 常驻表内存查询：枚举列按存储的名称比较，大小写规则与字符串一致 */
+class ResidentTableTest {
+
+    /** 声明顺序与名称顺序相反 */
+    enum Rank { ZOMBIE, CREEPER, ARCHER }
+
+    @Entity
+    static class Mob {
+        @Id long id;
+        Rank rank;
+
+        Mob() {}
+
+        Mob(long id, Rank rank) {
+            this.id = id;
+            this.rank = rank;
+        }
+    }
+
+    private static ResidentTable<Mob> table(boolean ignoreCase) {
+        ResidentTable<Mob> t = new ResidentTable<>(EntityPlan.of(Mob.class, "mob"), ignoreCase);
+        t.load(List.of(new Mob(1L, Rank.ZOMBIE), new Mob(2L, Rank.CREEPER), new Mob(3L, Rank.ARCHER)));
+        return t;
+    }
+
+    @Test
+    void enumsOrderByName() {
+        List<Long> ids = table(false).query(Criteria.of().orderBy("rank")).items().stream().map(m -> m.id).toList();
+        assertEquals(List.of(3L, 2L, 1L), ids);
+    }
+
+    @Test
+    void enumRangeFollowsNames() {
+        List<Long> ids = table(true).query(Criteria.of().lt("rank", Rank.CREEPER)).items().stream().map(m -> m.id).toList();
+        assertEquals(List.of(3L), ids);
+        assertEquals(1, table(true).query(Criteria.of().eq("rank", Rank.ZOMBIE)).items().size());
+    }
+}
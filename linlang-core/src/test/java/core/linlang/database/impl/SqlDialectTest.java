@@ -0,0 +1,42 @@
+package core.linlang.database.impl;
+
+import api.linlang.file.database.annotations.Entity;
+import api.linlang.file.database.annotations.Id;
+import api.linlang.file.database.annotations.Index;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** upsert：MySQL 的 ON DUPLICATE KEY UPDATE 对任一唯一键生效，另有唯一索引的表不生成 */
+class SqlDialectTest {
+
+    @Entity
+    static class Account {
+        @Id(auto = false) String uuid;
+        String name;
+    }
+
+    @Entity
+    static class Named {
+        @Id(auto = false) String uuid;
+        @Index(unique = true) String name;
+    }
+
+    @Test
+    void mysqlUpsertUpdatesOnDuplicateKey() {
+        EntityPlan<Account> plan = EntityPlan.of(Account.class, "account");
+        assertEquals("INSERT INTO `account`(`uuid`,`name`) VALUES(?,?) ON DUPLICATE KEY UPDATE `name`=VALUES(`name`)",
+                SqlDialect.MYSQL.upsert(plan));
+    }
+
+    @Test
+    void mysqlUpsertIsSkippedWithUniqueIndex() {
+        EntityPlan<Named> plan = EntityPlan.of(Named.class, "named");
+        assertNull(SqlDialect.MYSQL.upsert(plan));
+        assertNull(SqlDialect.MYSQL_57.upsert(plan));
+        // H2 的 MERGE 按 KEY(id) 匹配，不受其他唯一索引影响
+        assertTrue(SqlDialect.H2.upsert(plan).startsWith("MERGE INTO `named`"));
+    }
+}
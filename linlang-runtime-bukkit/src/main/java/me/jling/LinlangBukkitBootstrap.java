@@ -17,11 +17,13 @@ import api.linlang.file.file.path.PathResolver;
 import api.linlang.messenger.LinMessenger;
 import api.linlang.runtime.Linlang;
 import core.linlang.audit.message.LinlangInternalMessageKeys;
+import core.linlang.database.impl.BlockingCallGuard;
 import core.linlang.database.impl.DataServiceImpl;
 import core.linlang.file.impl.ConfigServiceImpl;
 import core.linlang.file.impl.LangServiceImpl;
 
 import lombok.Getter;
+import org.bukkit.Bukkit;
 import me.jling.runtime.LinlangBootstrapRuntime;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -64,6 +66,7 @@ public final class LinlangBukkitBootstrap implements AutoCloseable, Linlang, Lin
         this.config = new ConfigServiceImpl(resolver, List.of());
         this.language = new LangServiceImpl(resolver, "zh_CN");
         this.database = new DataServiceImpl(resolver);
+        this.database.guard().tickThread(Bukkit::isPrimaryThread);
         this.hot    = new BukkitFsHotReloader(plugin);
 
         // 2 提供 Services 实例（供 API 实现返回）
@@ -125,6 +128,12 @@ public final class LinlangBukkitBootstrap implements AutoCloseable, Linlang, Lin
         return this;
     }
 
+    /** 主线程数据库调用检测：OFF 关闭，WARN 限流告警，STRICT 直接抛出（测试用） */
+    public LinlangBukkitBootstrap withDatabaseGuard(BlockingCallGuard.Mode mode) {
+        this.database.guard().mode(mode);
+        return this;
+    }
+
     @Override
     public void reload() {
         this.runtime.reloadI18n();